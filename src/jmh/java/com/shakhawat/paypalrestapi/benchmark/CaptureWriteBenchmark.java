@@ -0,0 +1,120 @@
+package com.shakhawat.paypalrestapi.benchmark;
+
+import com.shakhawat.paypalrestapi.PaypalRestApiApplication;
+import com.shakhawat.paypalrestapi.entity.PayPalCapture;
+import com.shakhawat.paypalrestapi.entity.PayPalOrder;
+import com.shakhawat.paypalrestapi.model.CurrencyUnit;
+import com.shakhawat.paypalrestapi.model.Money;
+import com.shakhawat.paypalrestapi.repository.PayPalCaptureRepository;
+import com.shakhawat.paypalrestapi.repository.PayPalOrderRepository;
+import com.shakhawat.paypalrestapi.service.DatabaseScheduler;
+import com.shakhawat.paypalrestapi.service.PayPalDataService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of capture writes: the previous per-row path (insert, select and update of the
+ * order, each write in its own transactions) against the batched {@link PayPalDataService}
+ * path. Both submit {@value #WRITES} concurrent writes through the database scheduler.
+ * Runs against the datasource in application.properties, override with
+ * {@code -Dspring.datasource.url=...}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dspring.main.web-application-type=none")
+public class CaptureWriteBenchmark {
+
+    private static final int WRITES = 200;
+    private static final int ORDERS = 50;
+
+    @Param({"commit", "queued"})
+    public String durability;
+
+    private ConfigurableApplicationContext context;
+    private PayPalDataService dataService;
+    private DatabaseScheduler databaseScheduler;
+    private PayPalCaptureRepository captureRepository;
+    private PayPalOrderRepository orderRepository;
+
+    private final String runId = "bench-" + System.nanoTime() + "-";
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void start() {
+        context = new SpringApplicationBuilder(PaypalRestApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jpa.show-sql=false",
+                        "paypal.webhook.inbox.poll-interval=1h",
+                        "paypal.db.batch.durability=" + durability)
+                .run();
+        dataService = context.getBean(PayPalDataService.class);
+        databaseScheduler = context.getBean(DatabaseScheduler.class);
+        captureRepository = context.getBean(PayPalCaptureRepository.class);
+        orderRepository = context.getBean(PayPalOrderRepository.class);
+
+        Flux.range(0, ORDERS)
+                .flatMap(i -> dataService.saveOrder(runId + "O" + i, "CREATED", null))
+                .blockLast();
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WRITES)
+    public void perRow() {
+        Flux.range(0, WRITES)
+                .flatMap(i -> databaseScheduler.run(() -> {
+                    PayPalCapture capture = capture(i);
+                    captureRepository.save(capture);
+
+                    Optional<PayPalOrder> order = orderRepository.findById(capture.getOrderId());
+                    if (order.isPresent()) {
+                        order.get().setAmount(capture.getAmount());
+                        orderRepository.save(order.get());
+                    }
+                }), WRITES)
+                .blockLast();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WRITES)
+    public void batched() {
+        Flux.range(0, WRITES)
+                .flatMap(i -> {
+                    PayPalCapture capture = capture(i);
+                    return dataService.saveCapturedPayment(capture.getOrderId(), capture.getCaptureId(), capture.getAmount(),
+                            capture.getStatus(), capture.getPayerEmail(), capture.getPaymentMethod(),
+                            capture.getCreateTime(), capture.getUpdateTime());
+                }, WRITES)
+                .then(Mono.empty())
+                .block();
+    }
+
+    private PayPalCapture capture(int i) {
+        return PayPalCapture.builder()
+                .captureId(runId + "C" + sequence.incrementAndGet())
+                .orderId(runId + "O" + (i % ORDERS))
+                .amount(new Money(1000 + 100L * i, CurrencyUnit.USD))
+                .status("COMPLETED")
+                .payerEmail("buyer@example.com")
+                .paymentMethod("PayPal")
+                .updateTime(Instant.now().toString())
+                .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.shakhawat.paypalrestapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.PaypalRestApiApplication;
+import com.shakhawat.paypalrestapi.entity.PayPalOrderStatus;
+import com.shakhawat.paypalrestapi.model.CurrencyUnit;
+import com.shakhawat.paypalrestapi.model.Money;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import com.shakhawat.paypalrestapi.model.RefundResource;
+import com.shakhawat.paypalrestapi.service.PayPalDataService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Throughput of the other {@link PayPalDataService} write paths, each through its
+ * write-behind batch: order statuses, refunds, webhook events as the inbox stores them and
+ * captures taken from a capture-order response. Each invocation submits {@value #WRITES}
+ * concurrent writes of new rows, as a burst of requests or webhooks would. Like
+ * {@link CaptureWriteBenchmark} it runs against the datasource in application.properties;
+ * the rows it wrote are deleted at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dspring.main.web-application-type=none")
+public class DataServiceWriteBenchmark {
+
+    private static final int WRITES = 200;
+
+    @Param({"commit", "queued"})
+    public String durability;
+
+    private ConfigurableApplicationContext context;
+    private PayPalDataService dataService;
+    private ObjectMapper objectMapper;
+
+    private final String runId = "bench-" + System.nanoTime() + "-";
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void start() {
+        context = new SpringApplicationBuilder(PaypalRestApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.jpa.show-sql=false",
+                        "--paypal.webhook.inbox.poll-interval=1h",
+                        "--paypal.db.batch.durability=" + durability);
+        dataService = context.getBean(PayPalDataService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    @TearDown
+    public void stop() throws SQLException {
+        Environment environment = context.getEnvironment();
+        // Closing the context flushes what is still queued, so the rows are deleted afterwards
+        context.close();
+        try (Connection connection = DriverManager.getConnection(environment.getProperty("spring.datasource.url"),
+                environment.getProperty("spring.datasource.username"), environment.getProperty("spring.datasource.password"))) {
+            for (String delete : List.of(
+                    "DELETE FROM paypal_order WHERE order_id LIKE ?",
+                    "DELETE FROM pay_pal_capture WHERE capture_id LIKE ?",
+                    "DELETE FROM paypal_refunds WHERE refund_id LIKE ?",
+                    "DELETE FROM paypal_webhook_event WHERE event_id LIKE ?",
+                    "DELETE FROM paypal_webhook_event_key WHERE event_id LIKE ?")) {
+                try (PreparedStatement statement = connection.prepareStatement(delete)) {
+                    statement.setString(1, runId + "%");
+                    statement.executeUpdate();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WRITES)
+    public void orderStatuses() {
+        submit(i -> dataService.saveOrderStatus(nextId("O"), PayPalOrderStatus.CREATED));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WRITES)
+    public void refunds() {
+        submit(i -> dataService.saveRefund(new RefundResource(nextId("R"), "COMPLETED", new Money(500 + i, CurrencyUnit.USD),
+                runId + "C" + i, null, "Returned item", Instant.now().toString(), Instant.now().toString(), null, null), null));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WRITES)
+    public void webhookEvents() {
+        submit(i -> {
+            String eventId = nextId("WH");
+            String payload = """
+                    {"id":"%s","event_type":"PAYMENT.CAPTURE.COMPLETED","resource_type":"capture","resource":{"id":"%sC%d","status":"COMPLETED","amount":{"currency_code":"USD","value":"10.00"}}}
+                    """.formatted(eventId, runId, i);
+            return dataService.saveWebhookEvent(eventId, "PAYMENT.CAPTURE.COMPLETED", runId + "C" + i, payload);
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WRITES)
+    public void capturedOrders() {
+        submit(i -> {
+            String orderId = nextId("O");
+            return Mono.fromCallable(() -> objectMapper.readValue("""
+                            {"id":"%s","status":"COMPLETED","payer":{"email_address":"buyer@example.com"},
+                             "purchase_units":[{"payments":{"captures":[{"id":"%sC","status":"COMPLETED",
+                               "amount":{"currency_code":"USD","value":"10.00"},"create_time":"2018-04-01T21:20:49Z"}]}}]}
+                            """.formatted(orderId, orderId), OrderResponse.class))
+                    .flatMap(response -> dataService.saveCapturedOrder(orderId, response));
+        });
+    }
+
+    private void submit(IntFunction<Mono<?>> write) {
+        Flux.range(0, WRITES)
+                .flatMap(write::apply, WRITES)
+                .then()
+                .block();
+    }
+
+    private String nextId(String kind) {
+        return runId + kind + sequence.incrementAndGet();
+    }
+}
@@ -0,0 +1,93 @@
+package com.shakhawat.paypalrestapi.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files, a baseline and a new run, benchmark by benchmark and
+ * parameter set. A result counts as a regression when it is worse than the baseline by
+ * more than the threshold (in percent) and by more than the two error margins together;
+ * throughput is worse when lower, the time modes when higher. Exits with 1 when any
+ * benchmark regressed, so it can fail a build:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@compare -Djmh.baseline=baseline.json [-Djmh.result=...] [-Djmh.threshold=10]
+ * </pre>
+ */
+public class JmhResultComparison {
+
+    record Result(String mode, double score, double error, String unit) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: JmhResultComparison <baseline.json> <result.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Result> baseline = read(new File(args[0]));
+        Map<String, Result> current = read(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Result> entry : new TreeMap<>(current).entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  new%n", entry.getKey(), "-", now.score(), "");
+                continue;
+            }
+            double change = (now.score() - before.score()) / before.score() * 100;
+            double worse = "thrpt".equals(now.mode()) ? -change : change;
+            boolean outsideError = Math.abs(now.score() - before.score()) > nanToZero(now.error()) + nanToZero(before.error());
+            boolean regressed = worse > threshold && outsideError;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), before.score(), now.score(), change,
+                    now.unit(), regressed ? "  REGRESSION" : "");
+        }
+        baseline.keySet().stream()
+                .filter(key -> !current.containsKey(key))
+                .forEach(key -> System.out.printf("%-90s  missing from the current run%n", key));
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> read(File file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            JsonNode metric = run.path("primaryMetric");
+            results.put(key(run), new Result(run.path("mode").asText(), metric.path("score").asDouble(),
+                    metric.path("scoreError").asDouble(Double.NaN), metric.path("scoreUnit").asText()));
+        }
+        return results;
+    }
+
+    private static String key(JsonNode run) {
+        StringBuilder key = new StringBuilder(run.path("benchmark").asText()
+                .replace("com.shakhawat.paypalrestapi.benchmark.", ""));
+        JsonNode params = run.path("params");
+        if (!params.isMissingNode()) {
+            key.append(' ');
+            for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                key.append(param.getKey()).append('=').append(param.getValue().asText()).append(it.hasNext() ? "," : "");
+            }
+        }
+        return key.toString();
+    }
+
+    private static double nanToZero(double value) {
+        return Double.isNaN(value) ? 0 : value;
+    }
+}
@@ -0,0 +1,87 @@
+package com.shakhawat.paypalrestapi.benchmark;
+
+import com.shakhawat.paypalrestapi.model.CurrencyUnit;
+import com.shakhawat.paypalrestapi.model.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and formatting of amounts: the previous {@code Double.valueOf} and
+ * {@code String.format("%.2f")} of the refund path, {@link BigDecimal} as the usual exact
+ * alternative, and {@link Money}. Run with {@code -prof gc} to compare allocation rates;
+ * {@code parseMoneyUnits} and {@code formatMoneyInto} should allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final String[] VALUES = {"0.99", "10.00", "1234.56", "100", "75.5", "99999.99", "0.01", "42.10"};
+
+    private final Money[] amounts = new Money[VALUES.length];
+    private final double[] doubles = new double[VALUES.length];
+    private final BigDecimal[] decimals = new BigDecimal[VALUES.length];
+    private final StringBuilder buffer = new StringBuilder(32);
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < VALUES.length; i++) {
+            amounts[i] = Money.of(VALUES[i], "USD");
+            doubles[i] = Double.parseDouble(VALUES[i]);
+            decimals[i] = new BigDecimal(VALUES[i]);
+        }
+    }
+
+    private int next() {
+        return next = (next + 1) & (VALUES.length - 1);
+    }
+
+    @Benchmark
+    public Double parseDouble() {
+        return Double.valueOf(VALUES[next()]);
+    }
+
+    @Benchmark
+    public BigDecimal parseBigDecimal() {
+        return new BigDecimal(VALUES[next()]).setScale(2, RoundingMode.UNNECESSARY);
+    }
+
+    @Benchmark
+    public Money parseMoney() {
+        return Money.of(VALUES[next()], "USD");
+    }
+
+    @Benchmark
+    public long parseMoneyUnits() {
+        return Money.parseMinorUnits(VALUES[next()], CurrencyUnit.USD);
+    }
+
+    @Benchmark
+    public String formatDouble() {
+        return String.format("%.2f", doubles[next()]);
+    }
+
+    @Benchmark
+    public String formatBigDecimal() {
+        return decimals[next()].setScale(2, RoundingMode.UNNECESSARY).toPlainString();
+    }
+
+    @Benchmark
+    public String formatMoney() {
+        return amounts[next()].value();
+    }
+
+    @Benchmark
+    public void formatMoneyInto(Blackhole blackhole) {
+        buffer.setLength(0);
+        blackhole.consume(amounts[next()].appendTo(buffer));
+    }
+}
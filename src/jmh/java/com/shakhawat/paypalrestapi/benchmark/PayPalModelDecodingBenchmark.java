@@ -0,0 +1,108 @@
+package com.shakhawat.paypalrestapi.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import com.shakhawat.paypalrestapi.model.WebhookEnvelope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old {@code Map<String, Object>} decoding of PayPal payloads with the typed
+ * models: a capture-order response navigated down to the capture, and a webhook envelope
+ * where only the id and event type are needed before the event is queued.
+ * {@code captureOrderSummary} is the whole of what {@code PayPalController.captureOrder}
+ * does with a response: decode, navigate to the capture and build the summary it returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayPalModelDecodingBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private static final String CAPTURE_RESPONSE = """
+            {"id":"5O190127TN364715T","status":"COMPLETED",
+             "payment_source":{"paypal":{"name":{"given_name":"John","surname":"Doe"},"email_address":"customer@example.com","account_id":"QYR5Z8XDVJNXQ"}},
+             "purchase_units":[{"reference_id":"d9f80740-38f0-11e8-b467-0ed5f89f718b",
+               "shipping":{"address":{"address_line_1":"2211 N First Street","admin_area_2":"San Jose","admin_area_1":"CA","postal_code":"95131","country_code":"US"}},
+               "payments":{"captures":[{"id":"3C679366HH908993F","status":"COMPLETED",
+                 "amount":{"currency_code":"USD","value":"100.00"},
+                 "seller_protection":{"status":"ELIGIBLE","dispute_categories":["ITEM_NOT_RECEIVED","UNAUTHORIZED_TRANSACTION"]},
+                 "final_capture":true,"disbursement_mode":"INSTANT",
+                 "seller_receivable_breakdown":{"gross_amount":{"currency_code":"USD","value":"100.00"},"paypal_fee":{"currency_code":"USD","value":"3.00"},"net_amount":{"currency_code":"USD","value":"97.00"}},
+                 "create_time":"2018-04-01T21:20:49Z","update_time":"2018-04-01T21:20:49Z",
+                 "links":[{"href":"https://api-m.paypal.com/v2/payments/captures/3C679366HH908993F","rel":"self","method":"GET"},
+                          {"href":"https://api-m.paypal.com/v2/payments/captures/3C679366HH908993F/refund","rel":"refund","method":"POST"}]}]}}],
+             "payer":{"name":{"given_name":"John","surname":"Doe"},"email_address":"customer@example.com","payer_id":"QYR5Z8XDVJNXQ"},
+             "links":[{"href":"https://api-m.paypal.com/v2/checkout/orders/5O190127TN364715T","rel":"self","method":"GET"}]}
+            """;
+
+    private static final String WEBHOOK_EVENT = """
+            {"id":"WH-2WR32451HC0233532-67976317FL4543714","event_version":"1.0","create_time":"2018-04-01T21:21:00Z",
+             "resource_type":"capture","event_type":"PAYMENT.CAPTURE.COMPLETED","summary":"Payment completed for $ 100.0 USD",
+             "resource":{"id":"3C679366HH908993F","status":"COMPLETED","amount":{"currency_code":"USD","value":"100.00"},
+               "final_capture":true,"seller_protection":{"status":"ELIGIBLE","dispute_categories":["ITEM_NOT_RECEIVED","UNAUTHORIZED_TRANSACTION"]},
+               "seller_receivable_breakdown":{"gross_amount":{"currency_code":"USD","value":"100.00"},"paypal_fee":{"currency_code":"USD","value":"3.00"},"net_amount":{"currency_code":"USD","value":"97.00"}},
+               "supplementary_data":{"related_ids":{"order_id":"5O190127TN364715T"}},
+               "create_time":"2018-04-01T21:20:49Z","update_time":"2018-04-01T21:20:49Z",
+               "links":[{"href":"https://api-m.paypal.com/v2/payments/captures/3C679366HH908993F","rel":"self","method":"GET"},
+                        {"href":"https://api-m.paypal.com/v2/checkout/orders/5O190127TN364715T","rel":"up","method":"GET"}]},
+             "links":[{"href":"https://api-m.paypal.com/v1/notifications/webhooks-events/WH-2WR32451HC0233532-67976317FL4543714","rel":"self","method":"GET"}]}
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public String captureResponseAsMap() throws Exception {
+        Map<String, Object> response = objectMapper.readValue(CAPTURE_RESPONSE, MAP_TYPE);
+        List<Map<String, Object>> purchaseUnits = (List<Map<String, Object>>) response.get("purchase_units");
+        Map<String, Object> payments = (Map<String, Object>) purchaseUnits.getFirst().get("payments");
+        Map<String, Object> capture = ((List<Map<String, Object>>) payments.get("captures")).getFirst();
+        Map<String, Object> amount = (Map<String, Object>) capture.get("amount");
+        return capture.get("id") + (String) amount.get("value");
+    }
+
+    @Benchmark
+    public String captureResponseTyped() throws Exception {
+        CaptureResource capture = objectMapper.readValue(CAPTURE_RESPONSE, OrderResponse.class).firstCapture();
+        return capture.id() + capture.amount().value();
+    }
+
+    @Benchmark
+    public Map<String, Object> captureOrderSummary() throws Exception {
+        CaptureResource capture = objectMapper.readValue(CAPTURE_RESPONSE, OrderResponse.class).firstCapture();
+        return Map.of(
+                "status", capture.status(),
+                "value", capture.amount().value(),
+                "currency", capture.amount().currency().code(),
+                "captureId", capture.id()
+        );
+    }
+
+    @Benchmark
+    public String webhookEnvelopeAsMap() throws Exception {
+        Map<String, Object> event = objectMapper.readValue(WEBHOOK_EVENT, MAP_TYPE);
+        return event.get("id") + (String) event.get("event_type");
+    }
+
+    @Benchmark
+    public String webhookEnvelopeTyped() throws Exception {
+        WebhookEnvelope event = objectMapper.readValue(WEBHOOK_EVENT, WebhookEnvelope.class);
+        return event.id() + event.eventType();
+    }
+
+    @Benchmark
+    public String webhookResourceTyped() throws Exception {
+        WebhookEnvelope event = objectMapper.readValue(WEBHOOK_EVENT, WebhookEnvelope.class);
+        return event.resourceAs(objectMapper, CaptureResource.class).orderId();
+    }
+}
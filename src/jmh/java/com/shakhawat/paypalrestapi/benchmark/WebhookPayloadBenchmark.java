@@ -0,0 +1,81 @@
+package com.shakhawat.paypalrestapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.VerifyWebhookSignatureRequest;
+import com.shakhawat.paypalrestapi.model.WebhookEnvelope;
+import com.shakhawat.paypalrestapi.service.PayPalService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work done on a received webhook body before anything is stored: decoding the
+ * envelope from the raw bytes, binding the resource once the event type is known, and,
+ * when the signature is verified by PayPal, building the verify-webhook-signature request
+ * with {@link PayPalService#buildWebhookVerifyPayload} and writing it out as the body
+ * WebClient sends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebhookPayloadBenchmark {
+
+    private static final byte[] BODY = """
+            {"id":"WH-2WR32451HC0233532-67976317FL4543714","event_version":"1.0","create_time":"2018-04-01T21:21:00Z",
+             "resource_type":"capture","event_type":"PAYMENT.CAPTURE.COMPLETED","summary":"Payment completed for $ 100.0 USD",
+             "resource":{"id":"3C679366HH908993F","status":"COMPLETED","amount":{"currency_code":"USD","value":"100.00"},
+               "final_capture":true,"seller_protection":{"status":"ELIGIBLE","dispute_categories":["ITEM_NOT_RECEIVED","UNAUTHORIZED_TRANSACTION"]},
+               "seller_receivable_breakdown":{"gross_amount":{"currency_code":"USD","value":"100.00"},"paypal_fee":{"currency_code":"USD","value":"3.00"},"net_amount":{"currency_code":"USD","value":"97.00"}},
+               "supplementary_data":{"related_ids":{"order_id":"5O190127TN364715T"}},
+               "create_time":"2018-04-01T21:20:49Z","update_time":"2018-04-01T21:20:49Z",
+               "links":[{"href":"https://api-m.paypal.com/v2/payments/captures/3C679366HH908993F","rel":"self","method":"GET"},
+                        {"href":"https://api-m.paypal.com/v2/checkout/orders/5O190127TN364715T","rel":"up","method":"GET"}]},
+             "links":[{"href":"https://api-m.paypal.com/v1/notifications/webhooks-events/WH-2WR32451HC0233532-67976317FL4543714","rel":"self","method":"GET"}]}
+            """.getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpHeaders headers = new HttpHeaders();
+    private PayPalService payPalService;
+
+    @Setup
+    public void setUp() {
+        headers.add("paypal-auth-algo", "SHA256withRSA");
+        headers.add("paypal-cert-url", "https://api-m.paypal.com/v1/notifications/certs/CERT-360caa42-fca2a594-1d93a270");
+        headers.add("paypal-transmission-id", "69cd13f0-d67a-11e5-baa3-778b53f4ae55");
+        headers.add("paypal-transmission-sig", "lmI95Jx3Y9nhR5SJWlHVIWpg4AgFk7n9bCHSRxbrd8A9zrhdu2rMyFrmz+Zjh3s3boXB07VXCXUZy/UFzUlnGJn0wDugt7FlSvdKeIJenLRemUxYCPVoEZzg9VFNqOa48gMkvF+XTpxBeUx/kWy6B5cp7GkT2+pOowfRK7OaynuxUoKW3JcMWw272VKjLTtTAShncla7tGF+55rxyt2KNZIIqxNMJ48RDZheGU5w1npu9dZHnPgTXB9iomeVRoD8O/jhRpnKsGrDschyNdkeh81BJJMH4Ctc6lnCCquoP/GzCzz33MMsNdid7vL/NIWaCsekQpW26FpWPi/tfj8nLA==");
+        headers.add("paypal-transmission-time", "2016-02-18T20:01:35Z");
+        // Only buildWebhookVerifyPayload is called, which needs nothing but the webhook id
+        payPalService = new PayPalService(null, null, null, null, null);
+        ReflectionTestUtils.setField(payPalService, "webhookId", "1JE4291016473214C");
+    }
+
+    @Benchmark
+    public String parseEnvelope() throws Exception {
+        WebhookEnvelope event = objectMapper.readValue(BODY, WebhookEnvelope.class);
+        return event.id() + event.eventType();
+    }
+
+    @Benchmark
+    public String parseEnvelopeAndResource() throws Exception {
+        WebhookEnvelope event = objectMapper.readValue(BODY, WebhookEnvelope.class);
+        return event.resourceAs(objectMapper, CaptureResource.class).orderId();
+    }
+
+    @Benchmark
+    public VerifyWebhookSignatureRequest buildVerifyPayload() {
+        return payPalService.buildWebhookVerifyPayload(headers, new String(BODY, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public byte[] writeVerifyPayload() throws Exception {
+        VerifyWebhookSignatureRequest request = payPalService.buildWebhookVerifyPayload(headers, new String(BODY, StandardCharsets.UTF_8));
+        return objectMapper.writeValueAsBytes(request);
+    }
+}
@@ -0,0 +1,215 @@
+package com.shakhawat.paypalrestapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.model.CurrencyUnit;
+import com.shakhawat.paypalrestapi.model.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open-model load against a running application: checkouts start at a fixed rate whatever
+ * the response times, as real buyers arrive, so a slow server builds up a backlog instead
+ * of slowing the load down. A checkout creates an order, captures it, delivers the
+ * PAYMENT.CAPTURE.COMPLETED webhook and, for {@code refundRatio} of them, refunds the
+ * capture and delivers PAYMENT.CAPTURE.REFUNDED.
+ * <p>
+ * Every step is timed on its own; {@code checkout} is timed from when the checkout was due
+ * to start, so time spent waiting behind earlier checkouts is counted rather than hidden.
+ * Arrivals beyond {@code maxInFlight} checkouts in progress are dropped and counted.
+ */
+@Slf4j
+public class LoadGenerator {
+
+    static final String CHECKOUT = "checkout";
+    static final String CREATE_ORDER = "create-order";
+    static final String CAPTURE_ORDER = "capture-order";
+    static final String CAPTURE_WEBHOOK = "capture-webhook";
+    static final String REFUND = "refund";
+    static final String REFUND_WEBHOOK = "refund-webhook";
+
+    private static final List<String> STEPS = List.of(CHECKOUT, CREATE_ORDER, CAPTURE_ORDER, CAPTURE_WEBHOOK, REFUND, REFUND_WEBHOOK);
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** Checkouts per second for {@code duration}, at most {@code maxInFlight} at once. */
+    public record Profile(double rate, Duration duration, int maxInFlight, double refundRatio) {
+    }
+
+    /** Latency of a step, in milliseconds. */
+    public record StepResult(long count, long errors, double throughput, double mean, Map<String, Double> percentiles, double max) {
+    }
+
+    public record Result(Profile profile, Instant startedAt, double seconds, long arrivals, long dropped,
+                         Map<String, StepResult> steps) {
+    }
+
+    /** A response other than 2xx; the body is kept for the log. */
+    static class StepFailedException extends RuntimeException {
+
+        StepFailedException(String step, HttpStatusCode status, String body) {
+            super(step + " returned " + status.value() + ": " + body);
+        }
+    }
+
+    private final WebClient webClient;
+    private final Profile profile;
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, Timer> timers = new LinkedHashMap<>();
+    private final Map<String, Counter> errors = new LinkedHashMap<>();
+
+    public LoadGenerator(String target, Profile profile) {
+        this.profile = profile;
+        ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+                .maxConnections(profile.maxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.webClient = WebClient.builder()
+                .baseUrl(target)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections).responseTimeout(Duration.ofSeconds(60))))
+                .build();
+        for (String step : STEPS) {
+            timers.put(step, Timer.builder("loadtest.latency")
+                    .tag("step", step)
+                    .publishPercentiles(PERCENTILES)
+                    .percentilePrecision(3)
+                    // Percentiles over the whole run rather than a sliding window
+                    .distributionStatisticExpiry(profile.duration().plusHours(1))
+                    .distributionStatisticBufferLength(1)
+                    .register(registry));
+            errors.put(step, registry.counter("loadtest.errors", "step", step));
+        }
+    }
+
+    public Result run() {
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / profile.rate());
+        long total = (long) (profile.rate() * profile.duration().toNanos() / TimeUnit.SECONDS.toNanos(1));
+        AtomicLong dropped = new AtomicLong();
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        log.info("Starting {} checkouts at {}/s", total, profile.rate());
+
+        Flux.interval(Duration.ofNanos(periodNanos))
+                .take(total)
+                .onBackpressureDrop(arrival -> dropped.incrementAndGet())
+                .flatMap(arrival -> checkout(start + arrival * periodNanos), profile.maxInFlight())
+                .blockLast(profile.duration().plusMinutes(2));
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Map<String, StepResult> steps = new LinkedHashMap<>();
+        timers.forEach((step, timer) -> {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            if (snapshot.count() == 0 && errors.get(step).count() == 0) {
+                return;
+            }
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            for (ValueAtPercentile value : snapshot.percentileValues()) {
+                percentiles.put("p" + BigDecimal.valueOf(value.percentile() * 100).stripTrailingZeros().toPlainString(),
+                        value.value(TimeUnit.MILLISECONDS));
+            }
+            steps.put(step, new StepResult(snapshot.count(), (long) errors.get(step).count(), snapshot.count() / seconds,
+                    snapshot.mean(TimeUnit.MILLISECONDS), percentiles, snapshot.max(TimeUnit.MILLISECONDS)));
+        });
+        return new Result(profile, startedAt, seconds, total, dropped.get(), steps);
+    }
+
+    private Mono<Void> checkout(long dueAt) {
+        String amount = new Money(ThreadLocalRandom.current().nextLong(100, 20000), CurrencyUnit.USD).value();
+        boolean refund = ThreadLocalRandom.current().nextDouble() < profile.refundRatio();
+
+        return step(CREATE_ORDER, webClient.post()
+                        .uri("/api/paypal/create-order")
+                        .header("Idempotency-Key", UUID.randomUUID().toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("intent", "CAPTURE",
+                                "purchase_units", List.of(Map.of("amount", Map.of("currency_code", "USD", "value", amount))))))
+                .map(order -> UriComponentsBuilder.fromUriString(order.path("approvalUrl").asText())
+                        .build().getQueryParams().getFirst("token"))
+                .flatMap(orderId -> step(CAPTURE_ORDER, webClient.post().uri("/api/paypal/capture-order/{orderId}", orderId))
+                        .flatMap(capture -> {
+                            String captureId = capture.path("captureId").asText();
+                            Mono<JsonNode> captured = step(CAPTURE_WEBHOOK, webhook("PAYMENT.CAPTURE.COMPLETED", """
+                                    {"id":"%s","status":"COMPLETED","amount":{"currency_code":"USD","value":"%s"},
+                                     "supplementary_data":{"related_ids":{"order_id":"%s"}}}""".formatted(captureId, amount, orderId)));
+                            if (!refund) {
+                                return captured;
+                            }
+                            return captured
+                                    .then(step(REFUND, webClient.post().uri("/api/paypal/refund/{captureId}", captureId)))
+                                    .flatMap(refunded -> step(REFUND_WEBHOOK, webhook("PAYMENT.CAPTURE.REFUNDED", """
+                                            {"id":"%s","status":"COMPLETED","amount":{"currency_code":"USD","value":"%s"},
+                                             "links":[{"href":"https://api-m.sandbox.paypal.com/v2/payments/captures/%s","rel":"up","method":"GET"}]}"""
+                                            .formatted(refunded.path("id").asText(), amount, captureId))));
+                        }))
+                .doOnSuccess(ignored -> timers.get(CHECKOUT).record(System.nanoTime() - dueAt, TimeUnit.NANOSECONDS))
+                .doOnError(e -> {
+                    errors.get(CHECKOUT).increment();
+                    log.debug("Checkout failed: {}", e.getMessage());
+                })
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private WebClient.RequestHeadersSpec<?> webhook(String eventType, String resource) {
+        String eventId = "WH-LOAD-" + UUID.randomUUID();
+        return webClient.post()
+                .uri("/api/paypal/webhook")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("paypal-auth-algo", "SHA256withRSA")
+                .header("paypal-cert-url", "https://api-m.sandbox.paypal.com/v1/notifications/certs/CERT-LOADTEST")
+                .header("paypal-transmission-id", UUID.randomUUID().toString())
+                .header("paypal-transmission-sig", "bG9hZHRlc3Q=")
+                .header("paypal-transmission-time", Instant.now().toString())
+                .bodyValue("""
+                        {"id":"%s","event_version":"1.0","create_time":"%s","resource_type":"capture","event_type":"%s","resource":%s}"""
+                        .formatted(eventId, Instant.now(), eventType, resource));
+    }
+
+    private Mono<JsonNode> step(String name, WebClient.RequestHeadersSpec<?> request) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return request.exchangeToMono(response -> response.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .flatMap(body -> response.statusCode().is2xxSuccessful()
+                                    ? Mono.just(body)
+                                    : Mono.error(new StepFailedException(name, response.statusCode(), body))))
+                    .map(LoadGenerator::parse)
+                    .doOnSuccess(ignored -> timers.get(name).record(System.nanoTime() - started, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> errors.get(name).increment());
+        });
+    }
+
+    private static JsonNode parse(String body) {
+        try {
+            return OBJECT_MAPPER.readTree(body);
+        } catch (Exception e) {
+            // Plain-text responses, e.g. of the webhook endpoint
+            return OBJECT_MAPPER.getNodeFactory().textNode(body);
+        }
+    }
+}
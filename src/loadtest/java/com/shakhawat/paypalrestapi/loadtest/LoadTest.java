@@ -0,0 +1,156 @@
+package com.shakhawat.paypalrestapi.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shakhawat.paypalrestapi.PaypalRestApiApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Load test of the application against {@link PayPalSimulator}:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--rate=200 --duration=2m --capture-order.latency=400ms --error-rate=0.02"
+ * </pre>
+ * By default the application is started in this JVM, on a free port, with its PayPal base
+ * URL pointed at the simulator and remote webhook verification, so verify-webhook-signature
+ * goes to the simulator too. It uses the database of application.properties in the schema
+ * {@code --schema}, which is dropped and created afresh at the start of each run. Other
+ * options with a dot, e.g. {@code --paypal.db.pool-size=20}, are passed on to it.
+ * <p>
+ * {@code --target=http://host:port} drives an application that is already running instead;
+ * start it with {@code --paypal.base-url=http://localhost:<simulator-port>
+ * --paypal.webhook.verification.mode=remote} and give the simulator a fixed
+ * {@code --simulator-port}. {@code --simulator-only} just runs the simulator until stopped.
+ * <p>
+ * Load: {@code --rate} checkouts per second for {@code --duration}, at most
+ * {@code --max-in-flight} at once, {@code --refund-ratio} of them refunded (see
+ * {@link LoadGenerator}). Simulator: {@code --latency}, {@code --jitter}, {@code --error-rate}
+ * and {@code --error-status} for every endpoint, overridden per endpoint as
+ * {@code --<endpoint>.latency} and so on, endpoints being token, create-order, capture-order,
+ * refund and verify. Throughput and latency percentiles are printed and written as JSON to
+ * {@code --report}.
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final Set<String> ENDPOINTS = Set.of(PayPalSimulator.TOKEN, PayPalSimulator.CREATE_ORDER,
+            PayPalSimulator.CAPTURE_ORDER, PayPalSimulator.REFUND, PayPalSimulator.VERIFY);
+
+    public static void main(String[] arguments) throws Exception {
+        ApplicationArguments args = new DefaultApplicationArguments(arguments);
+        Map<String, PayPalSimulator.Behaviour> behaviours = new HashMap<>();
+        ENDPOINTS.forEach(endpoint -> behaviours.put(endpoint, behaviour(args, endpoint)));
+        PayPalSimulator simulator = new PayPalSimulator(Integer.parseInt(option(args, "simulator-port", "0")), behaviours::get);
+        if (args.containsOption("simulator-only")) {
+            log.info("PayPal simulator running at {}, stop with Ctrl+C", simulator.baseUrl());
+            Thread.currentThread().join();
+        }
+
+        ConfigurableApplicationContext application = null;
+        String target = option(args, "target", null);
+        try {
+            if (target == null) {
+                application = startApplication(args, simulator.baseUrl());
+                target = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+            }
+            LoadGenerator.Profile profile = new LoadGenerator.Profile(
+                    Double.parseDouble(option(args, "rate", "50")),
+                    DurationStyle.detectAndParse(option(args, "duration", "60s")),
+                    Integer.parseInt(option(args, "max-in-flight", "1000")),
+                    Double.parseDouble(option(args, "refund-ratio", "0.2")));
+            LoadGenerator.Result result = new LoadGenerator(target, profile).run();
+
+            print(result, simulator.stats());
+            File report = new File(option(args, "report", "target/loadtest-report.json"));
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("result", result);
+            json.put("simulator", simulator.stats());
+            new ObjectMapper().findAndRegisterModules()
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+                    .writerWithDefaultPrettyPrinter()
+                    .writeValue(report, json);
+            log.info("Report written to {}", report.getAbsolutePath());
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            simulator.close();
+        }
+    }
+
+    private static PayPalSimulator.Behaviour behaviour(ApplicationArguments args, String endpoint) {
+        return new PayPalSimulator.Behaviour(
+                DurationStyle.detectAndParse(endpointOption(args, endpoint, "latency", "50ms")),
+                DurationStyle.detectAndParse(endpointOption(args, endpoint, "jitter", "20ms")),
+                Double.parseDouble(endpointOption(args, endpoint, "error-rate", "0")),
+                Integer.parseInt(endpointOption(args, endpoint, "error-status", "503")));
+    }
+
+    private static ConfigurableApplicationContext startApplication(ApplicationArguments args, String payPalUrl) throws Exception {
+        Properties datasource = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        String schema = option(args, "schema", "paypal_rest_api_loadtest");
+        try (Connection connection = DriverManager.getConnection(datasource.getProperty("spring.datasource.url"),
+                datasource.getProperty("spring.datasource.username"), datasource.getProperty("spring.datasource.password"));
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+            statement.execute("CREATE SCHEMA " + schema);
+        }
+
+        List<String> applicationArgs = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + datasource.getProperty("spring.datasource.url")
+                        .replace("currentSchema=paypal_rest_api", "currentSchema=" + schema),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.com.shakhawat.paypalrestapi=WARN",
+                "--paypal.base-url=" + payPalUrl,
+                "--paypal.webhook.verification.mode=remote"));
+        for (String name : args.getOptionNames()) {
+            int dot = name.indexOf('.');
+            if (dot > 0 && !ENDPOINTS.contains(name.substring(0, dot))) {
+                args.getOptionValues(name).forEach(value -> applicationArgs.add("--" + name + "=" + value));
+            }
+        }
+        return new SpringApplicationBuilder(PaypalRestApiApplication.class).run(applicationArgs.toArray(String[]::new));
+    }
+
+    private static void print(LoadGenerator.Result result, Map<String, Map<String, Long>> simulator) {
+        System.out.printf("%n%d checkouts at %.1f/s over %.1fs, %d dropped (more than %d in flight)%n",
+                result.arrivals(), result.profile().rate(), result.seconds(), result.dropped(), result.profile().maxInFlight());
+        System.out.printf("%-16s %8s %7s %9s %9s %9s %9s %9s %9s %9s%n",
+                "Step", "Count", "Errors", "Req/s", "Mean ms", "p50", "p90", "p99", "p99.9", "Max");
+        result.steps().forEach((step, stats) -> {
+            Map<String, Double> p = stats.percentiles();
+            System.out.printf("%-16s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", step, stats.count(), stats.errors(),
+                    stats.throughput(), stats.mean(), p.get("p50"), p.get("p90"), p.get("p99"), p.get("p99.9"), stats.max());
+        });
+        System.out.printf("%nSimulator: %s%n", simulator);
+    }
+
+    private static String endpointOption(ApplicationArguments args, String endpoint, String name, String defaultValue) {
+        return option(args, endpoint + "." + name, option(args, name, defaultValue));
+    }
+
+    private static String option(ApplicationArguments args, String name, String defaultValue) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.getLast();
+    }
+}
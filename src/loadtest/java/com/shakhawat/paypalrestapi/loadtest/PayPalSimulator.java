@@ -0,0 +1,254 @@
+package com.shakhawat.paypalrestapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A local stand-in for the PayPal REST API, for load tests the rate-limited sandbox cannot
+ * take. Serves the calls the application makes: access tokens, create, capture and refund,
+ * and verify-webhook-signature. Orders and captures are kept in memory, so capture and refund
+ * responses refer to what was created, and a repeated PayPal-Request-Id replays the first
+ * response as PayPal does.
+ * <p>
+ * Each endpoint answers after its {@link Behaviour}: a latency with uniform jitter, and a
+ * share of requests failed with an error status, to exercise retries and circuit breakers.
+ * Endpoints are named as the operations of {@code PayPalResilience}.
+ */
+@Slf4j
+public class PayPalSimulator implements AutoCloseable {
+
+    public static final String TOKEN = "token";
+    public static final String CREATE_ORDER = "create-order";
+    public static final String CAPTURE_ORDER = "capture-order";
+    public static final String REFUND = "refund";
+    public static final String VERIFY = "verify";
+
+    /** How an endpoint responds: after {@code latency} ± {@code jitter}, failing {@code errorRate} of requests. */
+    public record Behaviour(Duration latency, Duration jitter, double errorRate, int errorStatus) {
+
+        Duration nextDelay() {
+            long jitterNanos = jitter.toNanos();
+            long delay = latency.toNanos() + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(-jitterNanos, jitterNanos + 1) : 0);
+            return Duration.ofNanos(Math.max(0, delay));
+        }
+
+        boolean nextFails() {
+            return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+        }
+    }
+
+    private record Order(String id, JsonNode amount) {
+    }
+
+    private record Capture(String id, String orderId, JsonNode amount, String time) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Function<String, Behaviour> behaviours;
+    private final Map<String, Order> orders = new ConcurrentHashMap<>();
+    private final Map<String, Capture> captures = new ConcurrentHashMap<>();
+    private final Map<String, String> capturedOrders = new ConcurrentHashMap<>();
+    // Response bodies by PayPal-Request-Id, replayed for repeated requests
+    private final Map<String, String> replies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requests = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> injectedErrors = new ConcurrentHashMap<>();
+    private final DisposableServer server;
+
+    /**
+     * Starts the simulator on {@code port} (0 for any free port). {@code behaviours} gives
+     * the behaviour of each endpoint by name.
+     */
+    public PayPalSimulator(int port, Function<String, Behaviour> behaviours) {
+        this.behaviours = behaviours;
+        this.server = HttpServer.create()
+                .port(port)
+                .route(routes -> routes
+                        .post("/v1/oauth2/token", (request, response) -> handle(TOKEN, request, response, body -> token()))
+                        .post("/v2/checkout/orders", (request, response) -> handle(CREATE_ORDER, request, response, this::createOrder))
+                        .post("/v2/checkout/orders/{orderId}/capture", (request, response) ->
+                                handle(CAPTURE_ORDER, request, response, body -> capture(request.param("orderId"))))
+                        .post("/v2/payments/captures/{captureId}/refund", (request, response) ->
+                                handle(REFUND, request, response, body -> refund(request.param("captureId"), body)))
+                        .post("/v1/notifications/verify-webhook-signature", (request, response) ->
+                                handle(VERIFY, request, response, body -> reply(200, Map.of("verification_status", "SUCCESS")))))
+                .bindNow();
+        log.info("PayPal simulator listening on port {}", server.port());
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    /** Requests and injected errors per endpoint so far. */
+    public Map<String, Map<String, Long>> stats() {
+        Map<String, Map<String, Long>> stats = new TreeMap<>();
+        requests.forEach((endpoint, count) -> stats.put(endpoint, Map.of(
+                "requests", count.get(),
+                "injectedErrors", injectedErrors.getOrDefault(endpoint, new AtomicLong()).get())));
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    private record Reply(int status, String body) {
+    }
+
+    private Mono<Void> handle(String endpoint, HttpServerRequest request, HttpServerResponse response,
+                              Function<JsonNode, Reply> handler) {
+        requests.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+        Behaviour behaviour = behaviours.apply(endpoint);
+        String requestId = request.requestHeaders().get("PayPal-Request-Id");
+
+        Mono<Reply> reply = request.receive().aggregate().asString()
+                .defaultIfEmpty("")
+                .map(body -> {
+                    if (behaviour.nextFails()) {
+                        injectedErrors.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+                        return reply(behaviour.errorStatus(), error("INTERNAL_SERVER_ERROR", "Injected by the simulator"));
+                    }
+                    String replayed = requestId != null ? replies.get(endpoint + ":" + requestId) : null;
+                    if (replayed != null) {
+                        return new Reply(200, replayed);
+                    }
+                    Reply result = handler.apply(parse(body));
+                    if (requestId != null && result.status() < 300) {
+                        replies.putIfAbsent(endpoint + ":" + requestId, result.body());
+                    }
+                    return result;
+                });
+
+        return Mono.delay(behaviour.nextDelay())
+                .then(reply)
+                .flatMap(result -> response.status(HttpResponseStatus.valueOf(result.status()))
+                        .header("Content-Type", "application/json")
+                        .sendString(Mono.just(result.body()))
+                        .then());
+    }
+
+    private Reply token() {
+        return reply(200, Map.of(
+                "access_token", "SIM-" + UUID.randomUUID(),
+                "token_type", "Bearer",
+                "expires_in", 32400));
+    }
+
+    private Reply createOrder(JsonNode body) {
+        JsonNode amount = body.path("purchase_units").path(0).path("amount");
+        if (amount.isMissingNode()) {
+            return reply(422, error("UNPROCESSABLE_ENTITY", "purchase_units[0].amount is required"));
+        }
+        String orderId = newId();
+        orders.put(orderId, new Order(orderId, amount));
+        return reply(201, Map.of(
+                "id", orderId,
+                "status", "CREATED",
+                "links", new Object[]{
+                        link("https://api-m.sandbox.paypal.com/v2/checkout/orders/" + orderId, "self", "GET"),
+                        link("https://www.sandbox.paypal.com/checkoutnow?token=" + orderId, "approve", "GET")}));
+    }
+
+    private Reply capture(String orderId) {
+        Order order = orders.get(orderId);
+        if (order == null) {
+            return reply(404, error("RESOURCE_NOT_FOUND", "Order " + orderId + " does not exist"));
+        }
+        String captureId = newId();
+        if (capturedOrders.putIfAbsent(orderId, captureId) != null) {
+            return reply(422, error("ORDER_ALREADY_CAPTURED", "Order " + orderId + " is already captured"));
+        }
+        Capture capture = new Capture(captureId, orderId, order.amount(), Instant.now().toString());
+        captures.put(captureId, capture);
+
+        ObjectNode response = objectMapper.createObjectNode()
+                .put("id", orderId)
+                .put("status", "COMPLETED");
+        response.putObject("payer").put("email_address", "buyer-" + orderId.toLowerCase() + "@example.com");
+        response.putArray("purchase_units").addObject()
+                .putObject("payments").putArray("captures").add(captureNode(capture));
+        return new Reply(201, response.toString());
+    }
+
+    private Reply refund(String captureId, JsonNode body) {
+        Capture capture = captures.get(captureId);
+        if (capture == null) {
+            return reply(404, error("RESOURCE_NOT_FOUND", "Capture " + captureId + " does not exist"));
+        }
+        JsonNode amount = body.has("amount") ? body.get("amount") : capture.amount();
+        String now = Instant.now().toString();
+        ObjectNode response = objectMapper.createObjectNode()
+                .put("id", newId())
+                .put("status", "COMPLETED")
+                .put("create_time", now)
+                .put("update_time", now);
+        response.set("amount", amount);
+        response.putArray("links").addObject()
+                .put("href", "https://api-m.sandbox.paypal.com/v2/payments/captures/" + captureId)
+                .put("rel", "up")
+                .put("method", "GET");
+        return new Reply(201, response.toString());
+    }
+
+    private ObjectNode captureNode(Capture capture) {
+        ObjectNode node = objectMapper.createObjectNode()
+                .put("id", capture.id())
+                .put("status", "COMPLETED")
+                .put("create_time", capture.time())
+                .put("update_time", capture.time());
+        node.set("amount", capture.amount());
+        node.putObject("supplementary_data").putObject("related_ids").put("order_id", capture.orderId());
+        node.putArray("links").addObject()
+                .put("href", "https://api-m.sandbox.paypal.com/v2/checkout/orders/" + capture.orderId())
+                .put("rel", "up")
+                .put("method", "GET");
+        return node;
+    }
+
+    private JsonNode parse(String body) {
+        try {
+            return body.isBlank() ? objectMapper.createObjectNode() : objectMapper.readTree(body);
+        } catch (Exception e) {
+            return objectMapper.createObjectNode();
+        }
+    }
+
+    private Reply reply(int status, Object body) {
+        try {
+            return new Reply(status, objectMapper.writeValueAsString(body));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> error(String name, String message) {
+        return Map.of("name", name, "message", message, "debug_id", Long.toHexString(ThreadLocalRandom.current().nextLong()));
+    }
+
+    private static Map<String, String> link(String href, String rel, String method) {
+        return Map.of("href", href, "rel", rel, "method", method);
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 17).toUpperCase();
+    }
+}
@@ -0,0 +1,111 @@
+package com.shakhawat.paypalrestapi.cli;
+
+import com.shakhawat.paypalrestapi.reconciliation.ReconciliationEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Reconciles PayPal transaction reports against the database and exits:
+ * <pre>
+ * java -jar paypal-rest-api.jar --spring.main.web-application-type=none --reconcile \
+ *     --reports=transactions-2026-10.json,settlement-2026-10.csv \
+ *     --from=2026-10-01 --to=2026-10-31 --output=mismatches-2026-10.ndjson
+ * </pre>
+ * {@code from} and {@code to} are UTC dates, both included; {@code --reports} may be repeated
+ * or comma separated; {@code --output=-} writes to standard output. The exit code is 0 when
+ * nothing differs, 3 when mismatches were found, 2 for bad arguments and 1 on failure.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReconciliationCommand implements ApplicationRunner {
+
+    static final String OPTION = "reconcile";
+
+    private final ReconciliationEngine engine;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        int exitCode;
+        try {
+            exitCode = reconcile(args) == 0 ? 0 : 3;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.error("Invalid reconciliation arguments: {}", e.getMessage());
+            exitCode = 2;
+        } catch (RuntimeException e) {
+            log.error("Reconciliation failed", e);
+            exitCode = 1;
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+
+    private long reconcile(ApplicationArguments args) {
+        List<String> reportOption = args.getOptionValues("reports");
+        if (reportOption == null || reportOption.isEmpty()) {
+            throw new IllegalArgumentException("--reports is required");
+        }
+        List<Path> reports = reportOption.stream()
+                .flatMap(value -> List.of(value.split(",")).stream())
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(Path::of)
+                .toList();
+        for (Path report : reports) {
+            if (!Files.isReadable(report)) {
+                throw new IllegalArgumentException("Cannot read report " + report);
+            }
+        }
+        LocalDate from = LocalDate.parse(required(args, "from"));
+        LocalDate to = LocalDate.parse(required(args, "to"));
+        String output = required(args, "output");
+
+        try (OutputStream out = output(output)) {
+            ReconciliationEngine.Summary summary = engine.reconcile(reports, from, to, out);
+            log.info("Wrote {} mismatches for {} to {} to {}", summary.totalMismatches(), from, to, output);
+            return summary.totalMismatches();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static OutputStream output(String output) throws IOException {
+        if (output.equals("-")) {
+            // Standard output stays open; closing the stream only flushes it
+            return new BufferedOutputStream(System.out) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        return new BufferedOutputStream(Files.newOutputStream(Path.of(output)));
+    }
+
+    private static String required(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("--" + name + " is required");
+        }
+        return values.getFirst();
+    }
+}
@@ -0,0 +1,116 @@
+package com.shakhawat.paypalrestapi.cli;
+
+import com.shakhawat.paypalrestapi.service.ReconciliationExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes the reconciliation export to a file and exits, for scheduled jobs that should not go
+ * through HTTP:
+ * <pre>
+ * java -jar paypal-rest-api.jar --spring.main.web-application-type=none --reconciliation-export \
+ *     --from=2026-10-01 --to=2026-10-02 --format=csv --output=reconciliation-2026-10-01.csv
+ * </pre>
+ * {@code from} and {@code to} are ISO instants or dates (midnight UTC); {@code format} is
+ * {@code ndjson} (default) or {@code csv}; {@code --output=-} writes to standard output.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReconciliationExportCommand implements ApplicationRunner {
+
+    static final String OPTION = "reconciliation-export";
+
+    private final ReconciliationExportService exportService;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        int exitCode;
+        try {
+            export(args);
+            exitCode = 0;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.error("Invalid reconciliation export arguments: {}", e.getMessage());
+            exitCode = 2;
+        } catch (RuntimeException e) {
+            log.error("Reconciliation export failed", e);
+            exitCode = 1;
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+
+    private void export(ApplicationArguments args) {
+        Instant from = instant(required(args, "from"));
+        Instant to = instant(required(args, "to"));
+        ReconciliationExportService.Format format =
+                ReconciliationExportService.Format.valueOf(optional(args, "format", "ndjson").toUpperCase());
+        String output = required(args, "output");
+
+        long rows = 0;
+        try (Writer writer = writer(output);
+             Stream<String> lines = exportService.lines(from, to, format).toStream()) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                writer.write(line);
+                rows++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Exported {} reconciliation lines for [{}, {}) to {}", rows, from, to, output);
+    }
+
+    private static Writer writer(String output) throws IOException {
+        if (output.equals("-")) {
+            // Standard output stays open; closing the writer only flushes it
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        return Files.newBufferedWriter(Path.of(output), StandardCharsets.UTF_8);
+    }
+
+    private static Instant instant(String value) {
+        return value.contains("T") ? Instant.parse(value) : LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static String required(ApplicationArguments args, String name) {
+        String value = optional(args, name, null);
+        if (value == null) {
+            throw new IllegalArgumentException("--" + name + " is required");
+        }
+        return value;
+    }
+
+    private static String optional(ApplicationArguments args, String name, String defaultValue) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.getFirst();
+    }
+}
@@ -0,0 +1,79 @@
+package com.shakhawat.paypalrestapi.config;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * HTTP client for the PayPal REST API. Connections come from a dedicated, bounded pool
+ * whose active, idle and pending gauges are published to Micrometer under
+ * {@code reactor.netty.connection.provider.*} with {@code name=paypal}.
+ */
+@Slf4j
+@Configuration
+public class PayPalWebClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider payPalConnectionProvider(
+            @Value("${paypal.http.pool.max-connections:50}") int maxConnections,
+            @Value("${paypal.http.pool.pending-acquire-max-count:500}") int pendingAcquireMaxCount,
+            @Value("${paypal.http.pool.pending-acquire-timeout:5s}") Duration pendingAcquireTimeout,
+            @Value("${paypal.http.pool.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${paypal.http.pool.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${paypal.http.pool.evict-in-background:30s}") Duration evictInBackground
+    ) {
+        return ConnectionProvider.builder("paypal")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInBackground)
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient payPalWebClient(
+            ConnectionProvider payPalConnectionProvider,
+            WebClient.Builder webClientBuilder,
+            @Value("${paypal.mode:sandbox}") String mode,
+            @Value("${paypal.base-url:}") String configuredBaseUrl,
+            @Value("${paypal.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${paypal.http.response-timeout:30s}") Duration responseTimeout,
+            @Value("${paypal.http.http2:false}") boolean http2
+    ) {
+        // An explicit base URL, e.g. of the load-test simulator, takes precedence over the mode
+        String baseUrl = !configuredBaseUrl.isBlank() ? configuredBaseUrl
+                : "live".equalsIgnoreCase(mode)
+                ? "https://api-m.paypal.com"
+                : "https://api-m.sandbox.paypal.com";
+
+        HttpClient httpClient = HttpClient.create(payPalConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout)
+                .compress(true);
+        if (http2) {
+            // Negotiated through ALPN; falls back to HTTP/1.1 when the server does not offer h2
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        log.info("PayPal HTTP client for {} (http2={})", baseUrl, http2);
+
+        return webClientBuilder
+                .baseUrl(baseUrl)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
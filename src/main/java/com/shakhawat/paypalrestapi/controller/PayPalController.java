@@ -1,15 +1,30 @@
 package com.shakhawat.paypalrestapi.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.shakhawat.paypalrestapi.dto.BatchItemResultDto;
+import com.shakhawat.paypalrestapi.dto.BatchResultDto;
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.Money;
+import com.shakhawat.paypalrestapi.model.RefundResource;
+import com.shakhawat.paypalrestapi.service.OrderEvent;
+import com.shakhawat.paypalrestapi.service.PayPalCaptureCoordinator;
 import com.shakhawat.paypalrestapi.service.PayPalDataService;
+import com.shakhawat.paypalrestapi.service.PayPalIdempotencyStore;
+import com.shakhawat.paypalrestapi.service.PayPalOrderBatches;
+import com.shakhawat.paypalrestapi.service.PayPalOrderProjection;
 import com.shakhawat.paypalrestapi.service.PayPalService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
 
 @Slf4j
 @RestController
@@ -17,87 +32,134 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PayPalController {
 
+    // Clients may send this to make a repeated request return the first response
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final TypeReference<Map<String, String>> CREATE_ORDER_RESPONSE = new TypeReference<>() {};
+    private static final TypeReference<Map<String, Object>> CAPTURE_ORDER_RESPONSE = new TypeReference<>() {};
+    private static final TypeReference<RefundResource> REFUND_RESPONSE = new TypeReference<>() {};
+
     private final PayPalService payPalService;
     private final PayPalDataService dataService;
+    private final PayPalIdempotencyStore idempotencyStore;
+    private final PayPalOrderProjection orderProjection;
+    private final PayPalCaptureCoordinator captureCoordinator;
+    private final PayPalOrderBatches orderBatches;
 
     @PostMapping("/create-order")
-    public Mono<ResponseEntity<Map<String, String>>> createOrder(@RequestBody Map<String, Object> orderPayload) {
-        return payPalService.getAccessToken()
-                .flatMap(token -> payPalService.createOrder(token, orderPayload)
-                        .flatMap(orderResponse -> {
-                            String orderId = (String) orderResponse.get("id");
-                            String status = (String) orderResponse.get("status");
-
-                            // Extract approval URL
-                            List<Map<String, String>> links = (List<Map<String, String>>) orderResponse.get("links");
-                            String approvalUrl = links.stream()
-                                    .filter(link -> "approve".equals(link.get("rel")))
-                                    .findFirst()
-                                    .map(link -> link.get("href"))
-                                    .orElse(null);
-
-                            // (Optional) save only basic info here, capture full detail after user returns
-                            dataService.saveOrder(orderId, status, null, null); // or just skip
-
-                            assert approvalUrl != null;
-                            return Mono.just(ResponseEntity.ok(Map.of("approvalUrl", approvalUrl)));
-                        })
-                )
+    public Mono<ResponseEntity<Map<String, String>>> createOrder(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody Map<String, Object> orderPayload
+    ) {
+        // Without a client key identical payloads may be different orders, so only PayPal retries are deduplicated
+        Mono<Map<String, String>> response;
+        if (idempotencyKey == null) {
+            response = placeOrder("create-order-" + UUID.randomUUID(), orderPayload);
+        } else {
+            String requestId = "create-order-" + PayPalIdempotencyStore.sha256(idempotencyKey);
+            response = idempotencyStore.execute(requestId, "create-order", idempotencyStore.requestHash(orderPayload),
+                    CREATE_ORDER_RESPONSE, () -> placeOrder(requestId, orderPayload));
+        }
+
+        return response
+                .map(ResponseEntity::ok)
+                .onErrorResume(PayPalIdempotencyStore.KeyReusedException.class, e ->
+                        Mono.just(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("error", e.getMessage()))))
                 .onErrorResume(e -> {
                     log.error("Failed to create order", e);
                     return Mono.just(ResponseEntity.internalServerError().body(Map.of("error", e.getMessage())));
                 });
     }
 
+    private Mono<Map<String, String>> placeOrder(String requestId, Map<String, Object> orderPayload) {
+        return payPalService.withAccessToken(token -> payPalService.createOrder(token, requestId, orderPayload))
+                .flatMap(orderResponse -> {
+                    String orderId = orderResponse.id();
+
+                    // Extract approval URL
+                    String approvalUrl = orderResponse.approvalUrl();
+
+                    assert approvalUrl != null;
+
+                    // Only the order is recorded here; approval and capture arrive later by webhook or capture call
+                    return orderProjection.apply(OrderEvent.created(orderId))
+                            .thenReturn(Map.of("approvalUrl", approvalUrl));
+                });
+    }
+
     @PostMapping("/capture-order/{orderId}")
     public Mono<ResponseEntity<?>> captureOrder(@PathVariable String orderId) {
-        return payPalService.getAccessToken()
-                .flatMap(token -> payPalService.captureOrder(token, orderId)
-                        .flatMap(captureResponse -> {
-                            try {
-                                // Navigate response structure
-                                List<Map<String, Object>> purchaseUnits = (List<Map<String, Object>>) captureResponse.get("purchase_units");
-                                Map<String, Object> purchaseUnit = purchaseUnits.getFirst();
-
-                                Map<String, Object> payments = (Map<String, Object>) purchaseUnit.get("payments");
-                                List<Map<String, Object>> captures = (List<Map<String, Object>>) payments.get("captures");
-                                Map<String, Object> capture = captures.get(0);
-
-                                String captureId = (String) capture.get("id");
-                                String status = (String) capture.get("status");
-                                String updateTime = (String) capture.get("update_time");
-
-                                Map<String, Object> amount = (Map<String, Object>) capture.get("amount");
-                                Double value = Double.valueOf((String) amount.get("value"));
-                                String currency = (String) amount.get("currency_code");
-
-                                Map<String, Object> payer = (Map<String, Object>) captureResponse.get("payer");
-                                String payerEmail = payer != null ? (String) payer.get("email_address") : null;
-
-                                String paymentMethod = "PayPal";
-
-                                // Save captured data (can make this async if needed)
-                                dataService.saveCapturedPayment(orderId, captureId, value, currency, status, payerEmail, paymentMethod, updateTime);
-
-                                // Return response
-                                return Mono.just((ResponseEntity<?>) ResponseEntity.ok(Map.of(
-                                        "status", status,
-                                        "value", value,
-                                        "currency", currency,
-                                        "captureId", captureId
-                                )));
-
-                            } catch (Exception e) {
-                                log.error("Failed to parse capture response", e);
-                                return Mono.just(ResponseEntity.internalServerError().body(Map.of("error", "Unexpected capture structure")));
-                            }
-                        }))
+        // An order is captured at most once, so the order id alone is the idempotency key
+        String requestId = PayPalService.captureRequestId(orderId);
+        return idempotencyStore.execute(requestId, "capture-order", requestId, CAPTURE_ORDER_RESPONSE, () -> capture(orderId))
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(PayPalCaptureCoordinator.CaptureInProgressException.class, e ->
+                        Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()))))
                 .onErrorResume(e -> {
                     log.error("Failed to capture order", e);
                     return Mono.just(ResponseEntity.internalServerError().body(Map.of("error", e.getMessage())));
                 });
     }
 
+    /** Creates an order for each payload in the array; items succeed or fail on their own. */
+    @PostMapping("/create-orders:batch")
+    public Mono<ResponseEntity<Object>> createOrders(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody List<Map<String, Object>> orderPayloads
+    ) {
+        return batchResponse(orderBatches.createOrders(idempotencyKey, orderPayloads), order -> {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("orderId", order.id());
+            result.put("approvalUrl", order.approvalUrl());
+            return result;
+        });
+    }
+
+    /** Captures each order in the array; items succeed or fail on their own. */
+    @PostMapping("/capture-orders:batch")
+    public Mono<ResponseEntity<Object>> captureOrders(@RequestBody List<String> orderIds) {
+        return batchResponse(orderBatches.captureOrders(orderIds), PayPalController::captureSummary);
+    }
+
+    private static <T> Mono<ResponseEntity<Object>> batchResponse(Mono<List<PayPalOrderBatches.Item<T>>> batch,
+                                                                 Function<T, Map<String, Object>> summary) {
+        return batch
+                .map(items -> {
+                    List<BatchItemResultDto> results = items.stream()
+                            .map(item -> BatchItemResultDto.builder()
+                                    .index(item.index())
+                                    .succeeded(item.succeeded())
+                                    .result(item.succeeded() ? summary.apply(item.value()) : null)
+                                    .error(item.succeeded() ? null : String.valueOf(item.error().getMessage()))
+                                    .build())
+                            .toList();
+                    int succeeded = (int) results.stream().filter(BatchItemResultDto::isSucceeded).count();
+                    return ResponseEntity.ok((Object) new BatchResultDto(succeeded, results.size() - succeeded, results));
+                })
+                .onErrorResume(IllegalArgumentException.class, e ->
+                        Mono.just(ResponseEntity.badRequest().body(Map.of("error", e.getMessage()))))
+                .onErrorResume(e -> {
+                    log.error("Batch request failed", e);
+                    return Mono.just(ResponseEntity.internalServerError().body(Map.of("error", e.getMessage())));
+                });
+    }
+
+    private Mono<Map<String, Object>> capture(String orderId) {
+        return captureCoordinator.capture(orderId)
+                .flatMap(captureResponse -> dataService.saveCapturedOrder(orderId, captureResponse))
+                .flatMap(capture -> orderProjection.apply(OrderEvent.captured(orderId, capture))
+                        .thenReturn(captureSummary(capture)));
+    }
+
+    private static Map<String, Object> captureSummary(CaptureResource capture) {
+        return Map.of(
+                "status", capture.status(),
+                "value", capture.amount().value(),
+                "currency", capture.amount().currency().code(),
+                "captureId", capture.id()
+        );
+    }
+
     @GetMapping("/paypal/success")
     public ResponseEntity<String> success(@RequestParam("token") String orderId) {
         return ResponseEntity.ok("Payment approved! Order ID: " + orderId);
@@ -111,28 +173,59 @@ public class PayPalController {
     @PostMapping("/refund/{captureId}")
     public Mono<ResponseEntity<Object>> refundCapture(
             @PathVariable String captureId,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             @RequestBody(required = false) Map<String, Object> body
     ) {
-        Double amount;
-        String currency;
+        Money amount;
 
         if (body != null && body.containsKey("amount")) {
-            Map<String, Object> amountObj = (Map<String, Object>) body.get("amount");
-            amount = Double.valueOf((String) amountObj.get("value"));
-            currency = (String) amountObj.get("currency_code");
+            try {
+                if (!(body.get("amount") instanceof Map<?, ?> amountObj)
+                        || !(amountObj.get("value") instanceof String value)
+                        || !(amountObj.get("currency_code") instanceof String currency)) {
+                    throw new IllegalArgumentException("amount must be an object with string currency_code and value");
+                }
+                amount = Money.of(value, currency);
+            } catch (RuntimeException e) {
+                return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "Invalid refund amount: " + e.getMessage())));
+            }
         } else {
-            currency = "";
             amount = null;
         }
 
-        return payPalService.getAccessToken()
-                .flatMap(token -> payPalService.refundCapture(token, captureId, amount, currency)
-                        .flatMap(refundResponse -> {
-                            if (refundResponse instanceof Map<?, ?>) {
-                                dataService.saveRefund((Map<String, Object>) refundResponse, captureId);
-                            }
-                            return Mono.just(ResponseEntity.ok(refundResponse));
-                        }))
+        // Without a client key two equal partial refunds are two refunds, so only PayPal retries are deduplicated
+        if (idempotencyKey == null) {
+            return refundResponse(refund("refund-" + UUID.randomUUID(), captureId, amount));
+        }
+        String requestHash = PayPalIdempotencyStore.sha256(captureId + "|" + amount);
+        String requestId = "refund-" + captureId + "-" + PayPalIdempotencyStore.sha256(idempotencyKey).substring(0, 32);
+        return refundResponse(idempotencyStore.execute(requestId, "refund", requestHash, REFUND_RESPONSE,
+                () -> refund(requestId, captureId, amount)));
+    }
+
+    private Mono<RefundResource> refund(String requestId, String captureId, Money amount) {
+        return payPalService.withAccessToken(token -> payPalService.refundCapture(token, requestId, captureId, amount))
+                .flatMap(refundResponse -> dataService.saveRefund(refundResponse, captureId)
+                        // PayPal has refunded; the PAYMENT.CAPTURE.REFUNDED webhook stores it through the inbox
+                        .onErrorResume(e -> {
+                            log.warn("Refund {} of capture {} not stored; left to its PAYMENT.CAPTURE.REFUNDED webhook",
+                                    refundResponse.id(), captureId, e);
+                            return Mono.empty();
+                        })
+                        .then(orderProjection.apply(OrderEvent.refunded(refundResponse, captureId))
+                                // PayPal has refunded; a status the projection cannot place yet is no reason to fail
+                                .onErrorResume(e -> {
+                                    log.warn("Order status not updated for refund of capture {}", captureId, e);
+                                    return Mono.empty();
+                                }))
+                        .thenReturn(refundResponse));
+    }
+
+    private static Mono<ResponseEntity<Object>> refundResponse(Mono<RefundResource> refund) {
+        return refund
+                .map(refundResponse -> ResponseEntity.ok((Object) refundResponse))
+                .onErrorResume(PayPalIdempotencyStore.KeyReusedException.class, e ->
+                        Mono.just(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("error", e.getMessage()))))
                 .onErrorResume(e -> {
                     log.error("Refund error", e);
                     return Mono.just(ResponseEntity.status(500).body(Map.of("error", e.getMessage())));
@@ -141,4 +234,3 @@ public class PayPalController {
     }
 
 }
-
@@ -0,0 +1,105 @@
+package com.shakhawat.paypalrestapi.controller;
+
+import com.shakhawat.paypalrestapi.dto.KeysetPageDto;
+import com.shakhawat.paypalrestapi.dto.PayPalOrderDetailsDto;
+import com.shakhawat.paypalrestapi.dto.PayPalOrderStatusDto;
+import com.shakhawat.paypalrestapi.dto.PayPalRefundDto;
+import com.shakhawat.paypalrestapi.dto.PayPalWebhookEventSummaryDto;
+import com.shakhawat.paypalrestapi.service.PayPalOrderProjection;
+import com.shakhawat.paypalrestapi.service.PayPalQueryService;
+import com.shakhawat.paypalrestapi.service.ReconciliationExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/paypal")
+@RequiredArgsConstructor
+public class PayPalQueryController {
+
+    // Rows are written in chunks rather than one network write per row
+    private static final int EXPORT_LINES_PER_BUFFER = 256;
+
+    private final PayPalQueryService queryService;
+    private final ReconciliationExportService exportService;
+    private final PayPalOrderProjection orderProjection;
+
+    @GetMapping("/orders/{orderId}")
+    public Mono<ResponseEntity<PayPalOrderDetailsDto>> getOrder(@PathVariable String orderId) {
+        return queryService.findOrder(orderId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /** The lifecycle status of an order, served from memory for recently active orders. */
+    @GetMapping("/orders/{orderId}/status")
+    public Mono<ResponseEntity<PayPalOrderStatusDto>> getOrderStatus(@PathVariable String orderId) {
+        return orderProjection.status(orderId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/captures/{captureId}/refunds")
+    public Mono<List<PayPalRefundDto>> getRefunds(@PathVariable String captureId) {
+        return queryService.findRefundsByCapture(captureId);
+    }
+
+    /** Events received in {@code [from, to)}; the window defaults to the last 24 hours. */
+    @GetMapping("/webhook-events")
+    public Mono<ResponseEntity<Object>> getWebhookEvents(
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        Instant windowEnd = to != null ? to : Instant.now();
+        Instant windowStart = from != null ? from : windowEnd.minus(Duration.ofDays(1));
+        Mono<KeysetPageDto<PayPalWebhookEventSummaryDto>> page =
+                queryService.findWebhookEvents(eventType, windowStart, windowEnd, after, limit);
+        return page
+                .map(events -> ResponseEntity.ok((Object) events))
+                .onErrorResume(IllegalArgumentException.class, e ->
+                        Mono.just(ResponseEntity.badRequest().body(Map.of("error", e.getMessage()))));
+    }
+
+    /**
+     * Every order created in {@code [from, to)} with its captures and refunds, one row per
+     * order/capture/refund combination, streamed as NDJSON or CSV.
+     */
+    @GetMapping("/reconciliation")
+    public ResponseEntity<Flux<DataBuffer>> exportReconciliation(
+            @RequestParam Instant from,
+            @RequestParam Instant to,
+            @RequestParam(defaultValue = "ndjson") String format
+    ) {
+        ReconciliationExportService.Format exportFormat;
+        try {
+            exportFormat = ReconciliationExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        Flux<DataBuffer> body = exportService.lines(from, to, exportFormat)
+                .buffer(EXPORT_LINES_PER_BUFFER)
+                .map(lines -> DefaultDataBufferFactory.sharedInstance.wrap(String.join("", lines).getBytes(StandardCharsets.UTF_8)));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("reconciliation-" + from + "-" + to + "." + exportFormat.extension())
+                        .build().toString())
+                .body(body);
+    }
+}
@@ -1,8 +1,12 @@
 package com.shakhawat.paypalrestapi.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.shakhawat.paypalrestapi.service.PayPalDataService;
-import com.shakhawat.paypalrestapi.service.PayPalService;
+import com.shakhawat.paypalrestapi.model.WebhookEnvelope;
+import com.shakhawat.paypalrestapi.service.PayPalWebhookDeduplicator;
+import com.shakhawat.paypalrestapi.service.PayPalWebhookInbox;
+import com.shakhawat.paypalrestapi.service.PayPalWebhookVerifier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
@@ -10,79 +14,76 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
-import java.util.Map;
-
 @Slf4j
 @RestController
 @RequestMapping("/api/paypal")
 @RequiredArgsConstructor
 public class PayPalWebhookController {
 
-    private final PayPalService payPalService;
-    private final PayPalDataService dataService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PayPalWebhookVerifier webhookVerifier;
+    private final PayPalWebhookInbox webhookInbox;
+    private final PayPalWebhookDeduplicator webhookDeduplicator;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     @PostMapping("/webhook")
-    public Mono<ResponseEntity<String>> handleWebhook(@RequestHeader HttpHeaders headers, @RequestBody Map<String, Object> webhookEvent) {
-
-        return payPalService.getAccessToken().flatMap(accessToken -> {
-            Map<String, Object> verifyPayload = payPalService.buildWebhookVerifyPayload(headers, webhookEvent);
-            return payPalService.verifyWebhookSignature(accessToken, verifyPayload).flatMap(isValid -> {
-                if (Boolean.TRUE.equals(isValid)) {
-                    try {
-                        String eventType = (String) webhookEvent.get("event_type");
-                        String eventJson = new ObjectMapper().writeValueAsString(webhookEvent);
-                        Map<String, Object> resource = (Map<String, Object>) webhookEvent.get("resource");
-
-                        dataService.saveWebhookEvent(eventType, eventJson);
-
-                        if ("CHECKOUT.ORDER.APPROVED".equalsIgnoreCase(eventType)) {
-                            String orderId = (String) resource.get("id");
-                            return payPalService.handleCheckoutApprovedWebhook(orderId, accessToken)
-                                    .map(ResponseEntity::ok)
-                                    .onErrorResume(e -> {
-                                        log.error("Auto-capture failed in webhook", e);
-                                        return Mono.just(ResponseEntity.status(500).body("Auto-capture failed"));
-                                    });
-                        }
+    public Mono<ResponseEntity<String>> handleWebhook(@RequestHeader HttpHeaders headers, @RequestBody byte[] payload) {
 
-                        if ("PAYMENT.CAPTURE.COMPLETED".equalsIgnoreCase(eventType)) {
-                            String captureId = (String) resource.get("id");
+        // The raw body is verified, forwarded and stored as received; it is parsed exactly once, here.
+        // Only the envelope is decoded; the resource stays buffered until a worker needs it.
+        WebhookEnvelope webhookEvent;
+        try {
+            webhookEvent = objectMapper.readValue(payload, WebhookEnvelope.class);
+        } catch (Exception e) {
+            log.warn("Malformed webhook body", e);
+            count(null, "malformed");
+            return Mono.just(ResponseEntity.badRequest().body("Malformed webhook body"));
+        }
 
-                            return payPalService.handlePaymentCaptureCompletedWebhook(resource)
-                                    .map(ResponseEntity::ok)
-                                    .onErrorResume(e -> {
-                                        log.error("Capture handling failed", e);
-                                        return Mono.just(ResponseEntity.status(500).body("Capture handling failed"));
-                                    });
-                        }
+        // Redeliveries of an event we already accepted need no verification or processing
+        String eventId = webhookEvent.id();
+        if (webhookDeduplicator.isDuplicate(eventId)) {
+            log.info("Duplicate webhook event {} ignored", eventId);
+            count(null, "duplicate");
+            return Mono.just(ResponseEntity.ok("Duplicate webhook ignored"));
+        }
 
-                        // Handle refund webhook
-                        if ("PAYMENT.CAPTURE.REFUNDED".equals(eventType)) {
-                            String captureId = (String) resource.get("capture_id");
-                            if (captureId == null) {
-                                captureId = (String) resource.get("invoice_id");
-                            }
-                            dataService.saveRefund(resource, captureId);
-                            log.info("Refund captured via webhook: {}", resource.get("id"));
-                        }
-
-                        log.info("Webhook event processed: {}", eventType);
-                        return Mono.just(ResponseEntity.ok("Webhook processed"));
-                    } catch (Exception e) {
-                        log.error("Failed to process webhook event", e);
-                        return Mono.just(ResponseEntity.status(500).body("Internal Server Error"));
-                    }
-                } else {
-                    log.warn("Invalid webhook signature");
-                    return Mono.just(ResponseEntity.badRequest().body("Invalid webhook signature"));
-                }
-            });
+        return webhookVerifier.verify(headers, payload).flatMap(isValid -> {
+            if (Boolean.TRUE.equals(isValid)) {
+                // Acknowledge once the event is durably queued; the inbox workers apply it
+                return webhookInbox.enqueue(webhookEvent, payload)
+                        .map(saved -> {
+                            webhookDeduplicator.markSeen(eventId);
+                            log.info("Webhook event [{}] {} queued", saved.getId(), webhookEvent.eventType());
+                            count(webhookEvent.eventType(), "queued");
+                            return ResponseEntity.ok("Webhook received");
+                        })
+                        .switchIfEmpty(Mono.fromSupplier(() -> {
+                            webhookDeduplicator.markDuplicateInDatabase(eventId);
+                            count(webhookEvent.eventType(), "duplicate");
+                            return ResponseEntity.ok("Duplicate webhook ignored");
+                        }));
+            } else {
+                log.warn("Invalid webhook signature");
+                count(null, "invalid-signature");
+                return Mono.just(ResponseEntity.badRequest().body("Invalid webhook signature"));
+            }
         }).onErrorResume(e -> {
             log.error("Webhook processing error", e);
+            count(null, "error");
             return Mono.just(ResponseEntity.status(500).body("Internal Server Error"));
         });
     }
 
-
+    /**
+     * Counts deliveries as {@code paypal.webhook.received} by result. The event type is only
+     * taken from verified events, so unsigned requests cannot add tag values.
+     */
+    private void count(String verifiedEventType, String result) {
+        Counter.builder("paypal.webhook.received")
+                .tag("event_type", verifiedEventType != null ? verifiedEventType : "unverified")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
 }
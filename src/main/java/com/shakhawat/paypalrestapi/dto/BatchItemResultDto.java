@@ -0,0 +1,21 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.Map;
+
+/** The outcome of one item of a batch request: its result, or the error it failed with. */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResultDto {
+    // Position of the item in the request
+    private int index;
+    private boolean succeeded;
+    private Map<String, Object> result;
+    private String error;
+}
@@ -0,0 +1,17 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/** Per-item outcomes of a batch request, in request order. */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchResultDto {
+    private int succeeded;
+    private int failed;
+    private List<BatchItemResultDto> results;
+}
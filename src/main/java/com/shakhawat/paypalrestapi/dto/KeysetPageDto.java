@@ -0,0 +1,16 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/** One page of a listing; pass {@code nextCursor} back as {@code after} for the next page, null on the last. */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeysetPageDto<T> {
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,19 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import com.shakhawat.paypalrestapi.model.Money;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalCaptureDto {
+    private String captureId;
+    private String orderId;
+    private Money amount;
+    private String status;
+    private String payerEmail;
+    private String paymentMethod;
+    private String updateTime;
+}
@@ -0,0 +1,16 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalOrderDetailsDto {
+    private PayPalOrderDto order;
+    private List<PayPalCaptureDto> captures;
+    private List<PayPalRefundDto> refunds;
+}
@@ -1,5 +1,6 @@
 package com.shakhawat.paypalrestapi.dto;
 
+import com.shakhawat.paypalrestapi.model.Money;
 import lombok.*;
 
 import java.time.Instant;
@@ -12,8 +13,7 @@ import java.time.Instant;
 public class PayPalOrderDto {
     private String orderId;
     private String status;
-    private Double amount;
-    private String currency;
+    private Money amount;
     private Instant createdAt;
     private Instant updatedAt;
 }
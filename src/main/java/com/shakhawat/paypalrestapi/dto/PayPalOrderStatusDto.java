@@ -0,0 +1,20 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import com.shakhawat.paypalrestapi.entity.PayPalOrderStatus;
+import com.shakhawat.paypalrestapi.model.Money;
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalOrderStatusDto {
+    private String orderId;
+    private PayPalOrderStatus status;
+    private Money capturedAmount;
+    private Money refundedAmount;
+    private Instant updatedAt;
+}
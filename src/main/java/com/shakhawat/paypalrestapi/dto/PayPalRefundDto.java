@@ -0,0 +1,19 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import com.shakhawat.paypalrestapi.model.Money;
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalRefundDto {
+    private String refundId;
+    private String captureId;
+    private Money amount;
+    private String status;
+    private String reason;
+    private String createTime;
+    private String updateTime;
+}
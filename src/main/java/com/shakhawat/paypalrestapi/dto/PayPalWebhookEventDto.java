@@ -1,5 +1,6 @@
 package com.shakhawat.paypalrestapi.dto;
 
+import com.shakhawat.paypalrestapi.entity.PayPalWebhookEventStatus;
 import lombok.*;
 
 import java.time.Instant;
@@ -11,8 +12,11 @@ import java.time.Instant;
 @Builder
 public class PayPalWebhookEventDto {
     private Long id;
+    private String eventId;
     private String eventType;
     private String eventData;
     private Instant receivedAt;
+    private String resourceId;
+    private PayPalWebhookEventStatus status;
+    private int attempts;
 }
-
@@ -0,0 +1,23 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import com.shakhawat.paypalrestapi.entity.PayPalWebhookEventStatus;
+import lombok.*;
+
+import java.time.Instant;
+
+/** A webhook event without its payload, for listings. */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalWebhookEventSummaryDto {
+    private Long id;
+    private String eventId;
+    private String eventType;
+    private String resourceId;
+    private PayPalWebhookEventStatus status;
+    private int attempts;
+    private Instant receivedAt;
+    private Instant processedAt;
+}
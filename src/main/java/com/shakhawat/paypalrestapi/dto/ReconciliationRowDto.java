@@ -0,0 +1,31 @@
+package com.shakhawat.paypalrestapi.dto;
+
+import com.shakhawat.paypalrestapi.model.Money;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * One order joined with one of its captures and one of that capture's refunds. Capture and
+ * refund columns are null when the order has none.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationRowDto {
+    private String orderId;
+    private String orderStatus;
+    private Money orderAmount;
+    private Instant orderCreatedAt;
+    private String captureId;
+    private String captureStatus;
+    private Money captureAmount;
+    private String payerEmail;
+    private String captureUpdateTime;
+    private String refundId;
+    private String refundStatus;
+    private Money refundAmount;
+    private String refundCreateTime;
+}
@@ -0,0 +1,30 @@
+package com.shakhawat.paypalrestapi.entity;
+
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Base for entities whose id is assigned by PayPal or by us. Spring Data cannot tell from a
+ * non-null id whether such an entity is new, so {@code save} would select it first and then
+ * merge; tracking newness here lets a freshly built entity be persisted straight away.
+ */
+@MappedSuperclass
+public abstract class AssignedIdEntity implements Persistable<String> {
+
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,20 @@
+package com.shakhawat.paypalrestapi.entity;
+
+import com.shakhawat.paypalrestapi.model.CurrencyUnit;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/** Stores a currency as its ISO code; reading one back returns the interned unit. */
+@Converter(autoApply = true)
+public class CurrencyUnitConverter implements AttributeConverter<CurrencyUnit, String> {
+
+    @Override
+    public String convertToDatabaseColumn(CurrencyUnit currency) {
+        return currency != null ? currency.code() : null;
+    }
+
+    @Override
+    public CurrencyUnit convertToEntityAttribute(String code) {
+        return code != null ? CurrencyUnit.of(code) : null;
+    }
+}
@@ -1,22 +1,28 @@
 package com.shakhawat.paypalrestapi.entity;
 
+import com.shakhawat.paypalrestapi.model.Money;
 import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_capture_order_id", columnList = "order_id"),
+        @Index(name = "idx_capture_create_time", columnList = "create_time"),
+        @Index(name = "idx_capture_update_time", columnList = "update_time")
+})
 @Getter @Setter
 @NoArgsConstructor @AllArgsConstructor
 @Builder
-public class PayPalCapture {
+public class PayPalCapture extends AssignedIdEntity {
 
     @Id
     private String captureId;
 
     private String orderId;
 
-    private Double amount;
-
-    private String currency;
+    @Embedded
+    @AttributeOverride(name = "minorUnits", column = @Column(name = "amount_minor"))
+    private Money amount;
 
     private String status;
 
@@ -24,6 +30,13 @@ public class PayPalCapture {
 
     private String paymentMethod;
 
+    // PayPal's ISO-8601 UTC timestamps, so they sort and compare as strings
+    private String createTime;
+
     private String updateTime;
-}
 
+    @Override
+    public String getId() {
+        return captureId;
+    }
+}
@@ -0,0 +1,51 @@
+package com.shakhawat.paypalrestapi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * One row per order that was or is being captured. Whichever node inserts (or takes over an
+ * expired) claim calls PayPal; the others wait for the stored response.
+ */
+@Entity
+@Table(name = "paypal_capture_claim")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalCaptureClaim extends AssignedIdEntity {
+
+    public enum Status {
+        CLAIMED,
+        COMPLETED
+    }
+
+    @Id
+    private String orderId;
+
+    // Instance that holds the claim
+    private String owner;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private Instant claimedAt;
+
+    // A CLAIMED row past this time was abandoned and may be taken over
+    private Instant expiresAt;
+
+    // PayPal's capture response, once COMPLETED
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private String response;
+
+    @Override
+    public String getId() {
+        return orderId;
+    }
+}
@@ -0,0 +1,44 @@
+package com.shakhawat.paypalrestapi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "paypal_idempotency_key", indexes = {
+        @Index(name = "idx_idempotency_key_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalIdempotencyRecord extends AssignedIdEntity {
+
+    // Also sent to PayPal as PayPal-Request-Id
+    @Id
+    @Column(length = 128)
+    private String idempotencyKey;
+
+    private String operation;
+
+    // Hash of the request the key was first used with; a different request under the same key is refused
+    private String requestHash;
+
+    // Response body returned for the first request, replayed for repeats
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private String responseBody;
+
+    private Instant createdAt;
+
+    private Instant expiresAt;
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+}
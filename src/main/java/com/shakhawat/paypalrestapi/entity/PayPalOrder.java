@@ -1,32 +1,43 @@
 package com.shakhawat.paypalrestapi.entity;
 
+import com.shakhawat.paypalrestapi.model.Money;
+import jakarta.persistence.AttributeOverride;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.*;
 
 import java.time.Instant;
 
 @Entity
-@Table(name = "paypal_order")
+@Table(name = "paypal_order", indexes = {
+        @Index(name = "idx_order_created_at", columnList = "created_at, order_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class PayPalOrder {
+public class PayPalOrder extends AssignedIdEntity {
 
     @Id
     private String orderId;
 
     private String status;
 
-    private Double amount;
-
-    private String currency;
+    @Embedded
+    @AttributeOverride(name = "minorUnits", column = @Column(name = "amount_minor"))
+    private Money amount;
 
     private Instant createdAt;
 
     private Instant updatedAt;
-}
 
+    @Override
+    public String getId() {
+        return orderId;
+    }
+}
@@ -0,0 +1,41 @@
+package com.shakhawat.paypalrestapi.entity;
+
+import java.util.Locale;
+
+/**
+ * Lifecycle of an order, in the only order it can move: an order never goes back to an
+ * earlier status, so of two statuses the later one always wins.
+ */
+public enum PayPalOrderStatus {
+    CREATED,
+    APPROVED,
+    CAPTURED,
+    PARTIALLY_REFUNDED,
+    REFUNDED;
+
+    public boolean isAfter(PayPalOrderStatus other) {
+        return other == null || compareTo(other) > 0;
+    }
+
+    public static PayPalOrderStatus latest(PayPalOrderStatus a, PayPalOrderStatus b) {
+        return a == null || (b != null && b.isAfter(a)) ? b : a;
+    }
+
+    /**
+     * The status for a stored value, which may also be a PayPal order status written before
+     * the lifecycle existed (COMPLETED means captured). Null for anything else.
+     */
+    public static PayPalOrderStatus parse(String status) {
+        if (status == null) {
+            return null;
+        }
+        return switch (status.toUpperCase(Locale.ROOT)) {
+            case "CREATED", "SAVED", "PAYER_ACTION_REQUIRED" -> CREATED;
+            case "APPROVED" -> APPROVED;
+            case "CAPTURED", "COMPLETED" -> CAPTURED;
+            case "PARTIALLY_REFUNDED" -> PARTIALLY_REFUNDED;
+            case "REFUNDED" -> REFUNDED;
+            default -> null;
+        };
+    }
+}
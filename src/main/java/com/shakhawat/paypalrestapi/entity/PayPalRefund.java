@@ -1,5 +1,6 @@
 package com.shakhawat.paypalrestapi.entity;
 
+import com.shakhawat.paypalrestapi.model.Money;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -9,17 +10,20 @@ import lombok.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "paypal_refunds")
-public class PayPalRefund {
+@Table(name = "paypal_refunds", indexes = {
+        @Index(name = "idx_refund_capture_id", columnList = "capture_id"),
+        @Index(name = "idx_refund_create_time", columnList = "create_time")
+})
+public class PayPalRefund extends AssignedIdEntity {
 
     @Id
     private String refundId;
 
     private String captureId;
 
-    private Double amount;
-
-    private String currency;
+    @Embedded
+    @AttributeOverride(name = "minorUnits", column = @Column(name = "amount_minor"))
+    private Money amount;
 
     private String status;
 
@@ -28,4 +32,9 @@ public class PayPalRefund {
     private String createTime;
 
     private String updateTime;
+
+    @Override
+    public String getId() {
+        return refundId;
+    }
 }
@@ -2,11 +2,20 @@ package com.shakhawat.paypalrestapi.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.Instant;
 
+// Range-partitioned by month of received_at; the table, its partitions and indexes are created by schema.sql
 @Entity
-@Table(name = "paypal_webhook_event")
+@Table(name = "paypal_webhook_event", indexes = {
+        @Index(name = "idx_webhook_event_status_next_attempt", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_webhook_event_resource_status", columnList = "resource_id, status"),
+        @Index(name = "idx_webhook_event_received_at", columnList = "received_at, id"),
+        @Index(name = "idx_webhook_event_type_received_at", columnList = "event_type, received_at, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -14,15 +23,42 @@ import java.time.Instant;
 @Builder
 public class PayPalWebhookEvent {
 
+    // Pooled sequence ids keep Hibernate's JDBC insert batching on; IDENTITY would turn it off
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "paypal_webhook_event_seq")
+    @SequenceGenerator(name = "paypal_webhook_event_seq", sequenceName = "paypal_webhook_event_seq", allocationSize = 50)
     private Long id;
 
+    // PayPal's event id (WH-...), identical across redeliveries of the same event. Unique through
+    // paypal_webhook_event_key, since the partitioned table can only enforce (event_id, received_at)
+    private String eventId;
+
     private String eventType;
 
-    @Column(columnDefinition = "TEXT")
+    // Raw webhook body as PayPal sent it
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
     private String eventData;
 
+    // Partition key, part of the primary key (id, received_at)
+    @Column(nullable = false)
     private Instant receivedAt;
-}
 
+    // Inbox processing state; events are drained in order of arrival (received_at, then id) per resource
+    private String resourceId;
+
+    @Enumerated(EnumType.STRING)
+    private PayPalWebhookEventStatus status;
+
+    @ColumnDefault("0")
+    private int attempts;
+
+    private Instant nextAttemptAt;
+
+    private Instant claimedAt;
+
+    private Instant processedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
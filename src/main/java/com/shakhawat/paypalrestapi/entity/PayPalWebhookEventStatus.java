@@ -0,0 +1,8 @@
+package com.shakhawat.paypalrestapi.entity;
+
+public enum PayPalWebhookEventStatus {
+    PENDING,
+    PROCESSING,
+    PROCESSED,
+    DEAD_LETTER
+}
@@ -0,0 +1,32 @@
+package com.shakhawat.paypalrestapi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Ownership of one webhook inbox partition. Only the owner of a live lease claims the events
+ * of its partition; the owner's heartbeats keep extending it.
+ */
+@Entity
+@Table(name = "paypal_webhook_lease")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalWebhookLease {
+
+    // Hash of the event's resource id modulo paypal.webhook.lease.partitions
+    @Id
+    private Integer partitionNo;
+
+    // Node that holds the lease
+    private String owner;
+
+    private Instant acquiredAt;
+
+    // Past this time the owner is presumed gone and the partition may be taken over
+    private Instant expiresAt;
+}
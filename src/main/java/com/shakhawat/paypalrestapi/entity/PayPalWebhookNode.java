@@ -0,0 +1,27 @@
+package com.shakhawat.paypalrestapi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A running instance taking part in webhook processing. The number of live nodes decides
+ * how many inbox partitions each of them should hold.
+ */
+@Entity
+@Table(name = "paypal_webhook_node")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayPalWebhookNode {
+
+    @Id
+    private String nodeId;
+
+    private Instant startedAt;
+
+    private Instant heartbeatAt;
+}
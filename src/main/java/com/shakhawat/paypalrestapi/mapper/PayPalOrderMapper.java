@@ -12,7 +12,6 @@ public class PayPalOrderMapper {
                 .orderId(entity.getOrderId())
                 .status(entity.getStatus())
                 .amount(entity.getAmount())
-                .currency(entity.getCurrency())
                 .createdAt(entity.getCreatedAt())
                 .updatedAt(entity.getUpdatedAt())
                 .build();
@@ -25,7 +24,6 @@ public class PayPalOrderMapper {
                 .orderId(dto.getOrderId())
                 .status(dto.getStatus())
                 .amount(dto.getAmount())
-                .currency(dto.getCurrency())
                 .createdAt(dto.getCreatedAt())
                 .updatedAt(dto.getUpdatedAt())
                 .build();
@@ -10,9 +10,13 @@ public class PayPalWebhookEventMapper {
 
         return PayPalWebhookEventDto.builder()
                 .id(entity.getId())
+                .eventId(entity.getEventId())
                 .eventType(entity.getEventType())
                 .eventData(entity.getEventData())
                 .receivedAt(entity.getReceivedAt())
+                .resourceId(entity.getResourceId())
+                .status(entity.getStatus())
+                .attempts(entity.getAttempts())
                 .build();
     }
 
@@ -21,9 +25,13 @@ public class PayPalWebhookEventMapper {
 
         return PayPalWebhookEvent.builder()
                 .id(dto.getId())
+                .eventId(dto.getEventId())
                 .eventType(dto.getEventType())
                 .eventData(dto.getEventData())
                 .receivedAt(dto.getReceivedAt())
+                .resourceId(dto.getResourceId())
+                .status(dto.getStatus())
+                .attempts(dto.getAttempts())
                 .build();
     }
 }
@@ -0,0 +1,28 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+/** A PayPal capture, as returned by the capture API and in PAYMENT.CAPTURE.* webhooks. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record CaptureResource(
+        String id,
+        String status,
+        Money amount,
+        String invoiceId,
+        String createTime,
+        String updateTime,
+        List<Link> links,
+        SupplementaryData supplementaryData
+) {
+
+    public String orderId() {
+        return supplementaryData != null && supplementaryData.relatedIds() != null
+                ? supplementaryData.relatedIds().orderId()
+                : null;
+    }
+}
@@ -0,0 +1,65 @@
+package com.shakhawat.paypalrestapi.model;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A currency and the number of decimal places PayPal uses for it. Instances are interned, so
+ * there is one per code and they compare by identity; {@link #of} allocates nothing once a
+ * code has been seen.
+ */
+public final class CurrencyUnit {
+
+    // PayPal rejects decimals for these even where ISO 4217 has minor units (HUF, TWD)
+    private static final Set<String> ZERO_DECIMAL = Set.of("HUF", "JPY", "TWD");
+
+    private static final ConcurrentHashMap<String, CurrencyUnit> UNITS = new ConcurrentHashMap<>();
+
+    public static final CurrencyUnit USD = of("USD");
+    public static final CurrencyUnit EUR = of("EUR");
+
+    private final String code;
+    private final int exponent;
+    private final long scale;
+
+    private CurrencyUnit(String code, int exponent) {
+        this.code = code;
+        this.exponent = exponent;
+        this.scale = exponent == 0 ? 1 : 100;
+    }
+
+    /** The unit for a three-letter ISO 4217 code. */
+    public static CurrencyUnit of(String code) {
+        CurrencyUnit unit = UNITS.get(code);
+        if (unit != null) {
+            return unit;
+        }
+        if (code.length() != 3 || !isUpper(code.charAt(0)) || !isUpper(code.charAt(1)) || !isUpper(code.charAt(2))) {
+            throw new IllegalArgumentException("Invalid currency code: " + code);
+        }
+        return UNITS.computeIfAbsent(code, c -> new CurrencyUnit(c, ZERO_DECIMAL.contains(c) ? 0 : 2));
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    public String code() {
+        return code;
+    }
+
+    /** Digits after the decimal point: 2 for USD, 0 for JPY. */
+    public int exponent() {
+        return exponent;
+    }
+
+    /** Minor units per major unit, {@code 10^exponent}. */
+    long scale() {
+        return scale;
+    }
+
+    @Override
+    public String toString() {
+        return code;
+    }
+}
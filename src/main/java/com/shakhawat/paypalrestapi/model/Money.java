@@ -0,0 +1,149 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import jakarta.persistence.Embeddable;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * An exact amount of money: a whole number of minor units (cents, or yen for JPY) of a
+ * currency. Parsing and formatting work on the digits directly, without going through
+ * {@code double} or {@link BigDecimal}, and have allocation-free forms
+ * ({@link #parseMinorUnits}, {@link #appendTo}) for hot paths.
+ * <p>
+ * It reads and writes JSON as PayPal's amount object, {@code {"currency_code":"USD","value":"10.00"}},
+ * and is stored as the columns {@code amount_minor} and {@code currency} where embedded.
+ */
+@Embeddable
+public record Money(long minorUnits, CurrencyUnit currency) {
+
+    public Money {
+        Objects.requireNonNull(currency, "currency");
+        if (minorUnits == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Amount out of range");
+        }
+    }
+
+    public static Money ofMinor(long minorUnits, String currencyCode) {
+        return new Money(minorUnits, CurrencyUnit.of(currencyCode));
+    }
+
+    /** Parses a decimal amount such as {@code "10.5"} or {@code "-3.00"}. */
+    public static Money of(CharSequence value, String currencyCode) {
+        CurrencyUnit currency = CurrencyUnit.of(currencyCode);
+        return new Money(parseMinorUnits(value, currency), currency);
+    }
+
+    /** The money in a PayPal amount, or null when it has no value or currency. */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money from(Amount amount) {
+        if (amount == null || amount.value() == null || amount.currencyCode() == null) {
+            return null;
+        }
+        return of(amount.value(), amount.currencyCode());
+    }
+
+    /**
+     * Parses a decimal amount into minor units of {@code currency}. More decimals than the
+     * currency has are accepted only when they are zeros, since rounding would change the amount.
+     *
+     * @throws NumberFormatException if {@code value} is not a plain decimal number or does not fit
+     */
+    public static long parseMinorUnits(CharSequence value, CurrencyUnit currency) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid amount: " + value);
+            }
+            digits++;
+            if (decimals >= 0 && ++decimals > currency.exponent()) {
+                if (c != '0') {
+                    throw new NumberFormatException("Amount has more than " + currency.exponent()
+                            + " decimals for " + currency + ": " + value);
+                }
+                continue;
+            }
+            if (units > (Long.MAX_VALUE - (c - '0')) / 10) {
+                throw new NumberFormatException("Amount out of range: " + value);
+            }
+            units = units * 10 + (c - '0');
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid amount: " + value);
+        }
+        for (int missing = currency.exponent() - Math.max(decimals, 0); missing > 0; missing--) {
+            if (units > Long.MAX_VALUE / 10) {
+                throw new NumberFormatException("Amount out of range: " + value);
+            }
+            units *= 10;
+        }
+        return negative ? -units : units;
+    }
+
+    /** Appends the amount with exactly the currency's decimals, e.g. {@code 10.50} or {@code 1000}. */
+    public StringBuilder appendTo(StringBuilder out) {
+        long units = minorUnits;
+        if (units < 0) {
+            out.append('-');
+            units = -units;
+        }
+        long scale = currency.scale();
+        out.append(units / scale);
+        if (currency.exponent() > 0) {
+            long fraction = units % scale;
+            out.append('.');
+            if (fraction < 10) {
+                out.append('0');
+            }
+            out.append(fraction);
+        }
+        return out;
+    }
+
+    /** The amount as PayPal expects it in {@code value} fields. */
+    public String value() {
+        return appendTo(new StringBuilder(24)).toString();
+    }
+
+    @JsonValue
+    public Amount toAmount() {
+        return new Amount(value(), currency.code());
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.exponent());
+    }
+
+    public Money negate() {
+        return new Money(-minorUnits, currency);
+    }
+
+    /** The sum of two amounts in the same currency. */
+    public Money plus(Money other) {
+        if (other.currency != currency) {
+            throw new IllegalArgumentException("Cannot add " + other.currency + " to " + currency);
+        }
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(28)).append(' ').append(currency.code()).toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+/** Response of the v2 create-order and capture-order calls. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record OrderResponse(
+        String id,
+        String status,
+        List<Link> links,
+        List<PurchaseUnit> purchaseUnits,
+        Payer payer
+) {
+
+    public String approvalUrl() {
+        if (links == null) {
+            return null;
+        }
+        for (Link link : links) {
+            if ("approve".equals(link.rel())) {
+                return link.href();
+            }
+        }
+        return null;
+    }
+
+    /** First capture of the first purchase unit, or null when the order has none. */
+    public CaptureResource firstCapture() {
+        if (purchaseUnits == null || purchaseUnits.isEmpty()) {
+            return null;
+        }
+        Payments payments = purchaseUnits.getFirst().payments();
+        if (payments == null || payments.captures() == null || payments.captures().isEmpty()) {
+            return null;
+        }
+        return payments.captures().getFirst();
+    }
+}
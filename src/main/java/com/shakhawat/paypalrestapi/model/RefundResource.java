@@ -0,0 +1,45 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.List;
+
+/** A PayPal refund, as returned by the refund API and in PAYMENT.CAPTURE.REFUNDED webhooks. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record RefundResource(
+        String id,
+        String status,
+        Money amount,
+        String captureId,
+        String invoiceId,
+        String noteToPayer,
+        String createTime,
+        String updateTime,
+        List<Link> links,
+        SupplementaryData supplementaryData
+) {
+
+    public String orderId() {
+        return supplementaryData != null && supplementaryData.relatedIds() != null
+                ? supplementaryData.relatedIds().orderId()
+                : null;
+    }
+
+    /** The refunded capture, taken from the "up" link when PayPal does not name it directly. */
+    public String resolveCaptureId() {
+        if (captureId != null) {
+            return captureId;
+        }
+        if (links != null) {
+            for (Link link : links) {
+                if ("up".equals(link.rel()) && link.href() != null) {
+                    return link.href().substring(link.href().lastIndexOf('/') + 1);
+                }
+            }
+        }
+        return invoiceId;
+    }
+}
@@ -0,0 +1,17 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/** Just the identifying fields of any webhook resource. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record ResourceReference(String id, SupplementaryData supplementaryData) {
+
+    public String orderId() {
+        return supplementaryData != null && supplementaryData.relatedIds() != null
+                ? supplementaryData.relatedIds().orderId()
+                : null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/**
+ * One transaction of the Transaction Search API. {@code transactionStatus} is a one-letter
+ * code (S success, P pending, D denied, V reversed); refunds carry a negative amount.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record TransactionInfo(
+        String transactionId,
+        String paypalReferenceId,
+        String transactionEventCode,
+        String transactionInitiationDate,
+        String transactionStatus,
+        Amount transactionAmount
+) {
+}
@@ -0,0 +1,21 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/**
+ * Body of PayPal's verify-webhook-signature call. The event is written out exactly as it
+ * was received, so it is neither re-parsed nor re-serialized on the way to PayPal.
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record VerifyWebhookSignatureRequest(
+        String authAlgo,
+        String certUrl,
+        String transmissionId,
+        String transmissionSig,
+        String transmissionTime,
+        String webhookId,
+        @JsonRawValue String webhookEvent
+) {
+}
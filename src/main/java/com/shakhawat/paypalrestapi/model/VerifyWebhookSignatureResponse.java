@@ -0,0 +1,14 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record VerifyWebhookSignatureResponse(String verificationStatus) {
+
+    public boolean isSuccess() {
+        return "SUCCESS".equals(verificationStatus);
+    }
+}
@@ -0,0 +1,34 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+
+/**
+ * Webhook event envelope. The {@code resource} is kept as buffered tokens and only bound
+ * to a type once the event type tells us what it is (and whether we need it at all).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record WebhookEnvelope(
+        String id,
+        String eventType,
+        String resourceType,
+        String createTime,
+        TokenBuffer resource
+) {
+
+    public <T> T resourceAs(ObjectMapper objectMapper, Class<T> type) throws IOException {
+        if (resource == null) {
+            return null;
+        }
+        try (JsonParser parser = resource.asParser(objectMapper)) {
+            return objectMapper.readValue(parser, type);
+        }
+    }
+}
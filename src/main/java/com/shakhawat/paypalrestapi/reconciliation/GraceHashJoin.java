@@ -0,0 +1,229 @@
+package com.shakhawat.paypalrestapi.reconciliation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Joins two record streams on id with at most {@code maxInMemory} build records in memory.
+ * While the build side fits, it is hashed and the probe side streamed past it. When it does
+ * not, both sides are partitioned by id hash into spill files and each partition pair is
+ * joined the same way, using different hash bits at each level (Grace hash join).
+ */
+@Slf4j
+public class GraceHashJoin {
+
+    /** Receives every record exactly once: paired with its match, or alone. */
+    public interface Handler {
+        void matched(ReconciliationRecord build, ReconciliationRecord probe);
+
+        void buildOnly(ReconciliationRecord build);
+
+        void probeOnly(ReconciliationRecord probe);
+    }
+
+    private static final int BITS_PER_LEVEL = 4;
+    private static final int FAN_OUT = 1 << BITS_PER_LEVEL;
+    // Past this depth a partition is joined in memory whatever its size, e.g. when one id repeats
+    private static final int MAX_DEPTH = 4;
+
+    private final int maxInMemory;
+    private final Path spillDirectory;
+
+    public GraceHashJoin(int maxInMemory, Path spillDirectory) {
+        this.maxInMemory = maxInMemory;
+        this.spillDirectory = spillDirectory;
+    }
+
+    public void join(Iterator<ReconciliationRecord> build, Iterator<ReconciliationRecord> probe, Handler handler) throws IOException {
+        join(build, probe, handler, 0);
+    }
+
+    private void join(Iterator<ReconciliationRecord> build, Iterator<ReconciliationRecord> probe, Handler handler, int depth) throws IOException {
+        Map<String, ReconciliationRecord> table = new HashMap<>();
+        while (build.hasNext()) {
+            if (table.size() >= maxInMemory && depth < MAX_DEPTH) {
+                spill(table, build, probe, handler, depth);
+                return;
+            }
+            ReconciliationRecord record = build.next();
+            table.put(record.id(), record);
+        }
+
+        while (probe.hasNext()) {
+            ReconciliationRecord record = probe.next();
+            ReconciliationRecord match = table.remove(record.id());
+            if (match != null) {
+                handler.matched(match, record);
+            } else {
+                handler.probeOnly(record);
+            }
+        }
+        table.values().forEach(handler::buildOnly);
+    }
+
+    private void spill(Map<String, ReconciliationRecord> table, Iterator<ReconciliationRecord> build,
+                       Iterator<ReconciliationRecord> probe, Handler handler, int depth) throws IOException {
+        Path directory = Files.createTempDirectory(spillDirectory, "join-" + depth + "-");
+        log.debug("Build side exceeds {} records, spilling to {}", maxInMemory, directory);
+        try {
+            Path[] buildPartitions = partition(directory, "build", depth, table.values().iterator(), build);
+            table.clear();
+            Path[] probePartitions = partition(directory, "probe", depth, probe);
+            for (int i = 0; i < FAN_OUT; i++) {
+                try (RecordReader buildPartition = new RecordReader(buildPartitions[i]);
+                     RecordReader probePartition = new RecordReader(probePartitions[i])) {
+                    join(buildPartition, probePartition, handler, depth + 1);
+                }
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @SafeVarargs
+    private static Path[] partition(Path directory, String side, int depth, Iterator<ReconciliationRecord>... sources) throws IOException {
+        Path[] files = new Path[FAN_OUT];
+        RecordWriter[] writers = new RecordWriter[FAN_OUT];
+        try {
+            for (int i = 0; i < FAN_OUT; i++) {
+                files[i] = directory.resolve(side + "-" + i);
+                writers[i] = new RecordWriter(files[i]);
+            }
+            for (Iterator<ReconciliationRecord> source : sources) {
+                while (source.hasNext()) {
+                    ReconciliationRecord record = source.next();
+                    writers[partitionOf(record.id(), depth)].write(record);
+                }
+            }
+        } finally {
+            for (RecordWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return files;
+    }
+
+    private static int partitionOf(String id, int depth) {
+        // Spread the hash, then take the next BITS_PER_LEVEL bits for this level
+        int hash = id.hashCode() * 0x9E3779B9;
+        return (hash >>> (depth * BITS_PER_LEVEL)) & (FAN_OUT - 1);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /** Appends records to a spill file in a compact binary form. */
+    static final class RecordWriter implements Closeable {
+
+        private final DataOutputStream out;
+
+        RecordWriter(Path file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        }
+
+        void write(ReconciliationRecord record) throws IOException {
+            out.writeUTF(record.id());
+            out.writeByte(record.kind().ordinal());
+            out.writeLong(record.day() != null ? record.day().toEpochDay() : Long.MIN_VALUE);
+            writeNullable(record.amount() != null ? record.amount().toPlainString() : null);
+            writeNullable(record.currency());
+            writeNullable(record.status());
+        }
+
+        private void writeNullable(String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Reads back a file written by {@link RecordWriter}. */
+    static final class RecordReader implements Iterator<ReconciliationRecord>, Closeable {
+
+        private static final List<ReconciliationRecord.Kind> KINDS = List.of(ReconciliationRecord.Kind.values());
+
+        private final DataInputStream in;
+        private ReconciliationRecord next;
+
+        RecordReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            this.next = read();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ReconciliationRecord next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            ReconciliationRecord current = next;
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return current;
+        }
+
+        private ReconciliationRecord read() throws IOException {
+            String id;
+            try {
+                id = in.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+            ReconciliationRecord.Kind kind = KINDS.get(in.readByte());
+            long epochDay = in.readLong();
+            String amount = readNullable();
+            return new ReconciliationRecord(id, kind,
+                    epochDay != Long.MIN_VALUE ? LocalDate.ofEpochDay(epochDay) : null,
+                    amount != null ? new BigDecimal(amount) : null,
+                    readNullable(), readNullable());
+        }
+
+        private String readNullable() throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
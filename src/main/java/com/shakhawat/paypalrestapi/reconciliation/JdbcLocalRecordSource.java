@@ -0,0 +1,69 @@
+package com.shakhawat.paypalrestapi.reconciliation;
+
+import com.shakhawat.paypalrestapi.model.CurrencyUnit;
+import com.shakhawat.paypalrestapi.model.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Reads a day's captures and refunds straight from the tables through a cursor. Rows are
+ * attributed to the day of their {@code create_time}, or of {@code update_time} for rows
+ * stored before the create time was kept.
+ */
+@Component
+public class JdbcLocalRecordSource implements LocalRecordSource {
+
+    // Times are PayPal's ISO-8601 UTC strings, so a day is the string range [day, day + 1)
+    private static final String RECORDS = """
+            SELECT capture_id AS id, 'CAPTURE' AS kind, amount_minor, currency, status
+            FROM pay_pal_capture
+            WHERE (create_time >= ? AND create_time < ?)
+               OR (create_time IS NULL AND update_time >= ? AND update_time < ?)
+            UNION ALL
+            SELECT refund_id, 'REFUND', amount_minor, currency, status
+            FROM paypal_refunds
+            WHERE (create_time >= ? AND create_time < ?)
+               OR (create_time IS NULL AND update_time >= ? AND update_time < ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public JdbcLocalRecordSource(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 @Value("${paypal.reconciliation.fetch-size:1000}") int fetchSize) {
+        // A copy, so the fetch size does not leak to other users of the shared template
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public <T> T withRecords(LocalDate day, Function<Iterator<ReconciliationRecord>, T> work) {
+        String from = day.toString();
+        String to = day.plusDays(1).toString();
+        RowMapper<ReconciliationRecord> mapper = (rs, rowNum) -> {
+            long minorUnits = rs.getLong("amount_minor");
+            boolean hasAmount = !rs.wasNull();
+            String currency = rs.getString("currency");
+            return new ReconciliationRecord(rs.getString("id"), ReconciliationRecord.Kind.valueOf(rs.getString("kind")), day,
+                    hasAmount && currency != null ? new Money(minorUnits, CurrencyUnit.of(currency)).toBigDecimal() : null,
+                    currency, ReconciliationRecord.statusCode(rs.getString("status")));
+        };
+        // PostgreSQL only honours the fetch size inside a transaction
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            try (Stream<ReconciliationRecord> records = jdbcTemplate.queryForStream(RECORDS, mapper,
+                    from, to, from, to, from, to, from, to)) {
+                return work.apply(records.iterator());
+            }
+        });
+    }
+}
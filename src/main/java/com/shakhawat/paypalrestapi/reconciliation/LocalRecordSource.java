@@ -0,0 +1,12 @@
+package com.shakhawat.paypalrestapi.reconciliation;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/** The captures and refunds we hold for one UTC day, in no particular order. */
+public interface LocalRecordSource {
+
+    /** Calls {@code work} with the day's records; they can only be read until it returns. */
+    <T> T withRecords(LocalDate day, Function<Iterator<ReconciliationRecord>, T> work);
+}
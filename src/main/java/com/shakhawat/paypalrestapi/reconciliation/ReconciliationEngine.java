@@ -0,0 +1,263 @@
+package com.shakhawat.paypalrestapi.reconciliation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Compares PayPal transaction reports with our captures and refunds and writes every
+ * difference as one JSON {@link ReconciliationMismatch} per line.
+ * <p>
+ * The reports are read once and split into one spill file per day, then the days are
+ * reconciled in parallel on a fork-join pool: each day hash-joins the local records (build
+ * side) with the day's report records (probe side) on transaction id. A day with more than
+ * {@code max-in-memory} local records spills to disk instead of growing the heap, so memory
+ * is bounded by {@code parallelism * max-in-memory} records however large the reports are.
+ */
+@Slf4j
+@Service
+public class ReconciliationEngine {
+
+    /** What a run found; {@code mismatches} has a count for every type, zero included. */
+    public record Summary(int days, long reportRecords, long localRecords, long matched,
+                          Map<ReconciliationMismatch.Type, Long> mismatches) {
+
+        public long totalMismatches() {
+            return mismatches.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+
+    private final LocalRecordSource localRecords;
+    private final TransactionReportReader reportReader;
+    private final ObjectMapper objectMapper;
+    private final int parallelism;
+    private final int maxInMemory;
+    private final Path spillDirectory;
+
+    public ReconciliationEngine(
+            LocalRecordSource localRecords,
+            ObjectMapper objectMapper,
+            @Value("${paypal.reconciliation.parallelism:0}") int parallelism,
+            @Value("${paypal.reconciliation.max-in-memory:100000}") int maxInMemory,
+            @Value("${paypal.reconciliation.spill-directory:}") String spillDirectory
+    ) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("paypal.reconciliation.max-in-memory must be positive");
+        }
+        this.localRecords = localRecords;
+        this.reportReader = new TransactionReportReader(objectMapper);
+        this.objectMapper = objectMapper;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxInMemory = maxInMemory;
+        this.spillDirectory = Path.of(spillDirectory.isBlank() ? System.getProperty("java.io.tmpdir") : spillDirectory);
+    }
+
+    /**
+     * Reconciles the UTC days {@code from} to {@code to}, both included, writing the mismatches
+     * to {@code output} ordered by day. Report transactions outside those days are ignored.
+     */
+    public Summary reconcile(List<Path> reports, LocalDate from, LocalDate to, OutputStream output) throws IOException {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        Files.createDirectories(spillDirectory);
+        Path work = Files.createTempDirectory(spillDirectory, "reconciliation-");
+        try {
+            long reportRecords = splitByDay(reports, from, to, work);
+
+            List<DayResult> results = new ArrayList<>();
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<Callable<DayResult>> days = new ArrayList<>();
+                for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                    LocalDate current = day;
+                    days.add(() -> reconcileDay(current, work));
+                }
+                for (Future<DayResult> result : pool.invokeAll(days)) {
+                    results.add(result.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reconciliation interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) {
+                    throw io.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException("Reconciliation failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+
+            Map<ReconciliationMismatch.Type, Long> mismatches = new EnumMap<>(ReconciliationMismatch.Type.class);
+            for (ReconciliationMismatch.Type type : ReconciliationMismatch.Type.values()) {
+                mismatches.put(type, 0L);
+            }
+            long local = 0;
+            long matched = 0;
+            for (DayResult result : results) {
+                Files.copy(result.mismatchFile(), output);
+                local += result.localRecords();
+                matched += result.matched();
+                result.mismatches().forEach((type, count) -> mismatches.merge(type, count, Long::sum));
+            }
+            output.flush();
+
+            Summary summary = new Summary(results.size(), reportRecords, local, matched, mismatches);
+            log.info("Reconciled {} days from {} to {}: {} report and {} local records, {} matched, mismatches {}",
+                    summary.days(), from, to, reportRecords, local, matched, mismatches);
+            return summary;
+        } finally {
+            deleteRecursively(work);
+        }
+    }
+
+    /** Writes the report records of each day into {@code <work>/report-<day>}, returning how many there were. */
+    private long splitByDay(List<Path> reports, LocalDate from, LocalDate to, Path work) throws IOException {
+        Map<LocalDate, GraceHashJoin.RecordWriter> writers = new HashMap<>();
+        AtomicLong records = new AtomicLong();
+        try {
+            for (Path report : reports) {
+                reportReader.read(report, record -> {
+                    if (record.day().isBefore(from) || record.day().isAfter(to)) {
+                        return;
+                    }
+                    try {
+                        GraceHashJoin.RecordWriter writer = writers.get(record.day());
+                        if (writer == null) {
+                            writer = new GraceHashJoin.RecordWriter(reportFile(work, record.day()));
+                            writers.put(record.day(), writer);
+                        }
+                        writer.write(record);
+                        records.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (GraceHashJoin.RecordWriter writer : writers.values()) {
+                writer.close();
+            }
+        }
+        return records.get();
+    }
+
+    private DayResult reconcileDay(LocalDate day, Path work) throws IOException {
+        Path reportFile = reportFile(work, day);
+        if (Files.notExists(reportFile)) {
+            Files.createFile(reportFile);
+        }
+        Path mismatchFile = work.resolve("mismatches-" + day + ".ndjson");
+        Map<ReconciliationMismatch.Type, Long> mismatches = new EnumMap<>(ReconciliationMismatch.Type.class);
+        AtomicLong local = new AtomicLong();
+        AtomicLong matched = new AtomicLong();
+
+        try (Writer out = Files.newBufferedWriter(mismatchFile, StandardCharsets.UTF_8);
+             GraceHashJoin.RecordReader report = new GraceHashJoin.RecordReader(reportFile)) {
+            GraceHashJoin.Handler handler = new GraceHashJoin.Handler() {
+                @Override
+                public void matched(ReconciliationRecord build, ReconciliationRecord probe) {
+                    local.incrementAndGet();
+                    boolean amountDiffers = !sameAmount(build, probe);
+                    boolean statusDiffers = !Objects.equals(build.status(), probe.status());
+                    if (amountDiffers) {
+                        write(ReconciliationMismatch.Type.AMOUNT_DIFFERS, build, probe);
+                    }
+                    if (statusDiffers) {
+                        write(ReconciliationMismatch.Type.STATUS_DIFFERS, build, probe);
+                    }
+                    if (!amountDiffers && !statusDiffers) {
+                        matched.incrementAndGet();
+                    }
+                }
+
+                @Override
+                public void buildOnly(ReconciliationRecord build) {
+                    local.incrementAndGet();
+                    write(ReconciliationMismatch.Type.MISSING_IN_REPORT, build, null);
+                }
+
+                @Override
+                public void probeOnly(ReconciliationRecord probe) {
+                    write(ReconciliationMismatch.Type.MISSING_LOCALLY, null, probe);
+                }
+
+                private void write(ReconciliationMismatch.Type type, ReconciliationRecord local, ReconciliationRecord report) {
+                    mismatches.merge(type, 1L, Long::sum);
+                    try {
+                        out.write(objectMapper.writeValueAsString(ReconciliationMismatch.of(type, local, report)));
+                        out.write('\n');
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Mismatch cannot be serialized", e);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+
+            GraceHashJoin join = new GraceHashJoin(maxInMemory, work);
+            localRecords.withRecords(day, records -> {
+                try {
+                    join.join(records, report, handler);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        }
+        return new DayResult(mismatchFile, local.get(), matched.get(), mismatches);
+    }
+
+    private static boolean sameAmount(ReconciliationRecord local, ReconciliationRecord report) {
+        if (local.amount() == null || report.amount() == null) {
+            return local.amount() == report.amount();
+        }
+        return local.amount().compareTo(report.amount()) == 0 && Objects.equals(local.currency(), report.currency());
+    }
+
+    private static Path reportFile(Path work, LocalDate day) {
+        return work.resolve("report-" + day);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private record DayResult(Path mismatchFile, long localRecords, long matched,
+                             Map<ReconciliationMismatch.Type, Long> mismatches) {
+    }
+}
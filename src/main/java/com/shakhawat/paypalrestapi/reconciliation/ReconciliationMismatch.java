@@ -0,0 +1,33 @@
+package com.shakhawat.paypalrestapi.reconciliation;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/** One line of the mismatch report. Local or report fields are null when that side has no record. */
+public record ReconciliationMismatch(
+        LocalDate day,
+        String id,
+        ReconciliationRecord.Kind kind,
+        Type type,
+        BigDecimal localAmount,
+        String localCurrency,
+        String localStatus,
+        BigDecimal reportAmount,
+        String reportCurrency,
+        String reportStatus
+) {
+
+    public enum Type {
+        MISSING_LOCALLY,
+        MISSING_IN_REPORT,
+        AMOUNT_DIFFERS,
+        STATUS_DIFFERS
+    }
+
+    static ReconciliationMismatch of(Type type, ReconciliationRecord local, ReconciliationRecord report) {
+        ReconciliationRecord any = local != null ? local : report;
+        return new ReconciliationMismatch(any.day(), any.id(), any.kind(), type,
+                local != null ? local.amount() : null, local != null ? local.currency() : null, local != null ? local.status() : null,
+                report != null ? report.amount() : null, report != null ? report.currency() : null, report != null ? report.status() : null);
+    }
+}
@@ -0,0 +1,34 @@
+package com.shakhawat.paypalrestapi.reconciliation;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * A capture or refund on one side of the reconciliation, reduced to what is compared.
+ * Amounts are positive for refunds too, and {@code status} is a report status code.
+ */
+public record ReconciliationRecord(String id, Kind kind, LocalDate day, BigDecimal amount, String currency, String status) {
+
+    public enum Kind {
+        CAPTURE,
+        REFUND
+    }
+
+    /**
+     * The transaction report code (S, P, D, V) of a status from the Payments API or webhooks,
+     * so local rows compare with report rows. Unknown statuses are kept as they are.
+     */
+    public static String statusCode(String status) {
+        if (status == null) {
+            return null;
+        }
+        return switch (status.toUpperCase(Locale.ROOT)) {
+            case "COMPLETED", "PARTIALLY_REFUNDED", "REFUNDED" -> "S";
+            case "PENDING" -> "P";
+            case "DECLINED", "FAILED", "CANCELLED" -> "D";
+            case "REVERSED" -> "V";
+            default -> status;
+        };
+    }
+}
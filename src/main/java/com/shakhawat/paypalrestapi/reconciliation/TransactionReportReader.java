@@ -0,0 +1,187 @@
+package com.shakhawat.paypalrestapi.reconciliation;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.model.TransactionDetail;
+import com.shakhawat.paypalrestapi.model.TransactionInfo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads PayPal transaction reports one transaction at a time, so a file of any size can be
+ * reconciled. Two formats are understood, chosen by file extension:
+ * <ul>
+ *   <li>{@code .json}: saved Transaction Search responses. Every {@code transaction_details}
+ *       array in the file is read, so a file may hold a single page or an array of pages.</li>
+ *   <li>{@code .csv}: a header line naming at least {@code transaction_id},
+ *       {@code transaction_event_code}, {@code transaction_initiation_date},
+ *       {@code transaction_status}, {@code transaction_amount} and {@code currency_code}.</li>
+ * </ul>
+ * Only payments (event codes T00xx) and refunds (T11xx) are reconciled; other transactions,
+ * such as fees and transfers, are skipped.
+ */
+public class TransactionReportReader {
+
+    // PayPal writes offsets as +0000 in reports but Z elsewhere
+    private static final DateTimeFormatter INITIATION_DATE = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            .appendPattern("[XXX][XX]")
+            .toFormatter(Locale.ROOT);
+
+    private static final List<String> CSV_COLUMNS = List.of("transaction_id", "transaction_event_code",
+            "transaction_initiation_date", "transaction_status", "transaction_amount", "currency_code");
+
+    private final ObjectMapper objectMapper;
+
+    public TransactionReportReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /** Passes each payment and refund in {@code report} to {@code consumer}, in file order. */
+    public void read(Path report, Consumer<ReconciliationRecord> consumer) throws IOException {
+        String name = report.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".json")) {
+            readJson(report, consumer);
+        } else if (name.endsWith(".csv")) {
+            readCsv(report, consumer);
+        } else {
+            throw new IllegalArgumentException("Unsupported report format: " + report);
+        }
+    }
+
+    private void readJson(Path report, Consumer<ReconciliationRecord> consumer) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(report.toFile())) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.FIELD_NAME || !"transaction_details".equals(parser.currentName())) {
+                    continue;
+                }
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    TransactionInfo info = parser.readValueAs(TransactionDetail.class).transactionInfo();
+                    if (info != null) {
+                        accept(info.transactionId(), info.transactionEventCode(), info.transactionInitiationDate(),
+                                info.transactionStatus(),
+                                info.transactionAmount() != null ? info.transactionAmount().value() : null,
+                                info.transactionAmount() != null ? info.transactionAmount().currencyCode() : null,
+                                consumer);
+                    }
+                }
+            }
+        }
+    }
+
+    private void readCsv(Path report, Consumer<ReconciliationRecord> consumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(report, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            List<String> names = fields(header.startsWith("\uFEFF") ? header.substring(1) : header);
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            for (String column : CSV_COLUMNS) {
+                if (!columns.containsKey(column)) {
+                    throw new IllegalArgumentException(report + " has no " + column + " column");
+                }
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = fields(line);
+                accept(field(fields, columns, "transaction_id"), field(fields, columns, "transaction_event_code"),
+                        field(fields, columns, "transaction_initiation_date"), field(fields, columns, "transaction_status"),
+                        field(fields, columns, "transaction_amount"), field(fields, columns, "currency_code"),
+                        consumer);
+            }
+        }
+    }
+
+    private static void accept(String id, String eventCode, String initiationDate, String status,
+                               String amount, String currency, Consumer<ReconciliationRecord> consumer) {
+        ReconciliationRecord.Kind kind = kind(eventCode);
+        if (kind == null || id == null || id.isEmpty() || initiationDate == null || initiationDate.isEmpty()) {
+            return;
+        }
+        consumer.accept(new ReconciliationRecord(id, kind, day(initiationDate),
+                amount != null && !amount.isEmpty() ? new BigDecimal(amount).abs() : null,
+                currency != null && !currency.isEmpty() ? currency : null,
+                status != null && !status.isEmpty() ? status : null));
+    }
+
+    private static ReconciliationRecord.Kind kind(String eventCode) {
+        if (eventCode == null) {
+            return null;
+        }
+        if (eventCode.startsWith("T00")) {
+            return ReconciliationRecord.Kind.CAPTURE;
+        }
+        if (eventCode.startsWith("T11")) {
+            return ReconciliationRecord.Kind.REFUND;
+        }
+        return null;
+    }
+
+    static LocalDate day(String initiationDate) {
+        return OffsetDateTime.parse(initiationDate, INITIATION_DATE).withOffsetSameInstant(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        int index = columns.get(column);
+        return index < fields.size() ? fields.get(index) : null;
+    }
+
+    /** Splits one CSV line, honouring double quotes and doubled quotes inside them. */
+    static List<String> fields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
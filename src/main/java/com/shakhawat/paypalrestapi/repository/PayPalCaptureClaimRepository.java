@@ -0,0 +1,47 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalCaptureClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface PayPalCaptureClaimRepository extends JpaRepository<PayPalCaptureClaim, String> {
+
+    /**
+     * Claims the capture of an order for {@code owner}; returns 1 when claimed. A claim that
+     * expired before completing is taken over, a live or completed one is left alone.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO paypal_capture_claim (order_id, owner, status, claimed_at, expires_at)
+            VALUES (:orderId, :owner, 'CLAIMED', :now, :expiresAt)
+            ON CONFLICT (order_id) DO UPDATE
+                SET owner = EXCLUDED.owner, claimed_at = EXCLUDED.claimed_at, expires_at = EXCLUDED.expires_at
+                WHERE paypal_capture_claim.status = 'CLAIMED' AND paypal_capture_claim.expires_at <= EXCLUDED.claimed_at
+            """, nativeQuery = true)
+    int claim(@Param("orderId") String orderId, @Param("owner") String owner,
+              @Param("now") Instant now, @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE paypal_capture_claim
+            SET status = 'COMPLETED', response = CAST(:response AS jsonb), expires_at = NULL
+            WHERE order_id = :orderId AND owner = :owner
+            """, nativeQuery = true)
+    int complete(@Param("orderId") String orderId, @Param("owner") String owner, @Param("response") String response);
+
+    /** Gives up a claim after a failed capture, so the next attempt may claim it at once. */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM paypal_capture_claim WHERE order_id = :orderId AND owner = :owner AND status = 'CLAIMED'",
+            nativeQuery = true)
+    int release(@Param("orderId") String orderId, @Param("owner") String owner);
+}
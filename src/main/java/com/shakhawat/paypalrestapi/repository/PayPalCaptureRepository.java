@@ -1,9 +1,23 @@
 package com.shakhawat.paypalrestapi.repository;
 
+import com.shakhawat.paypalrestapi.dto.PayPalCaptureDto;
 import com.shakhawat.paypalrestapi.entity.PayPalCapture;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface PayPalCaptureRepository extends JpaRepository<PayPalCapture, String> {
+public interface PayPalCaptureRepository extends JpaRepository<PayPalCapture, String>, PayPalCaptureUpserts {
+
+    @Query("""
+            select new com.shakhawat.paypalrestapi.dto.PayPalCaptureDto(
+                c.captureId, c.orderId, c.amount, c.status, c.payerEmail, c.paymentMethod, c.updateTime)
+            from PayPalCapture c
+            where c.orderId = :orderId
+            order by c.captureId
+            """)
+    List<PayPalCaptureDto> findDtosByOrderId(@Param("orderId") String orderId);
 }
@@ -0,0 +1,18 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalCapture;
+
+import java.util.List;
+
+public interface PayPalCaptureUpserts {
+
+    /** A capture to upsert and whether its amount and currency are copied to its order. */
+    record CaptureUpsert(PayPalCapture capture, boolean updatesOrder) {
+    }
+
+    /**
+     * Inserts or overwrites each capture and updates its order in the same statement, sent
+     * as one JDBC batch without reading the rows first. Runs in the caller's transaction.
+     */
+    void upsertAll(List<CaptureUpsert> upserts);
+}
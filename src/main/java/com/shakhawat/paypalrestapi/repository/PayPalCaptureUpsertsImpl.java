@@ -0,0 +1,61 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalCapture;
+import com.shakhawat.paypalrestapi.model.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Types;
+import java.util.List;
+
+@RequiredArgsConstructor
+class PayPalCaptureUpsertsImpl implements PayPalCaptureUpserts {
+
+    // The order update reads the capture row returned by the upsert, so both happen in one round-trip.
+    // Webhooks carry no payer and often no order id, so those never replace what the capture call stored
+    private static final String UPSERT = """
+            WITH capture AS (
+                INSERT INTO pay_pal_capture (capture_id, order_id, amount_minor, currency, status, payer_email, payment_method,
+                                             create_time, update_time)
+                VALUES (:captureId, :orderId, :amountMinor, :currency, :status, :payerEmail, :paymentMethod, :createTime, :updateTime)
+                ON CONFLICT (capture_id) DO UPDATE
+                    SET order_id = COALESCE(EXCLUDED.order_id, pay_pal_capture.order_id),
+                        amount_minor = EXCLUDED.amount_minor, currency = EXCLUDED.currency, status = EXCLUDED.status,
+                        payer_email = COALESCE(EXCLUDED.payer_email, pay_pal_capture.payer_email),
+                        payment_method = COALESCE(EXCLUDED.payment_method, pay_pal_capture.payment_method),
+                        create_time = COALESCE(EXCLUDED.create_time, pay_pal_capture.create_time),
+                        update_time = EXCLUDED.update_time
+                RETURNING order_id, amount_minor, currency)
+            UPDATE paypal_order o SET amount_minor = c.amount_minor, currency = c.currency
+            FROM capture c
+            WHERE :updatesOrder AND o.order_id = c.order_id
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertAll(List<CaptureUpsert> upserts) {
+        SqlParameterSource[] batch = upserts.stream()
+                .map(PayPalCaptureUpsertsImpl::parameters)
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT, batch);
+    }
+
+    private static SqlParameterSource parameters(CaptureUpsert upsert) {
+        PayPalCapture capture = upsert.capture();
+        Money amount = capture.getAmount();
+        return new MapSqlParameterSource()
+                .addValue("captureId", capture.getCaptureId(), Types.VARCHAR)
+                .addValue("orderId", capture.getOrderId(), Types.VARCHAR)
+                .addValue("amountMinor", amount != null ? amount.minorUnits() : null, Types.BIGINT)
+                .addValue("currency", amount != null ? amount.currency().code() : null, Types.VARCHAR)
+                .addValue("status", capture.getStatus(), Types.VARCHAR)
+                .addValue("payerEmail", capture.getPayerEmail(), Types.VARCHAR)
+                .addValue("paymentMethod", capture.getPaymentMethod(), Types.VARCHAR)
+                .addValue("createTime", capture.getCreateTime(), Types.VARCHAR)
+                .addValue("updateTime", capture.getUpdateTime(), Types.VARCHAR)
+                .addValue("updatesOrder", upsert.updatesOrder(), Types.BOOLEAN);
+    }
+}
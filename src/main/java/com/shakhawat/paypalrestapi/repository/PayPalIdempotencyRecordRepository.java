@@ -0,0 +1,41 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalIdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface PayPalIdempotencyRecordRepository extends JpaRepository<PayPalIdempotencyRecord, String> {
+
+    Optional<PayPalIdempotencyRecord> findByIdempotencyKeyAndExpiresAtAfter(String idempotencyKey, Instant now);
+
+    /**
+     * Stores the response for a key unless another node stored one first. An expired record
+     * under the same key is replaced.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO paypal_idempotency_key (idempotency_key, operation, request_hash, response_body, created_at, expires_at)
+            VALUES (:idempotencyKey, :operation, :requestHash, CAST(:responseBody AS jsonb), :createdAt, :expiresAt)
+            ON CONFLICT (idempotency_key) DO UPDATE
+                SET operation = EXCLUDED.operation, request_hash = EXCLUDED.request_hash, response_body = EXCLUDED.response_body,
+                    created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+                WHERE paypal_idempotency_key.expires_at <= EXCLUDED.created_at
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("idempotencyKey") String idempotencyKey, @Param("operation") String operation,
+                       @Param("requestHash") String requestHash, @Param("responseBody") String responseBody,
+                       @Param("createdAt") Instant createdAt, @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PayPalIdempotencyRecord r where r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
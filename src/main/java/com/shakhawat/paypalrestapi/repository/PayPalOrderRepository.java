@@ -1,10 +1,21 @@
 package com.shakhawat.paypalrestapi.repository;
 
+import com.shakhawat.paypalrestapi.dto.PayPalOrderDto;
 import com.shakhawat.paypalrestapi.entity.PayPalOrder;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
-public interface PayPalOrderRepository extends JpaRepository<PayPalOrder, String> {
-}
+public interface PayPalOrderRepository extends JpaRepository<PayPalOrder, String>, PayPalOrderUpserts {
 
+    @Query("""
+            select new com.shakhawat.paypalrestapi.dto.PayPalOrderDto(o.orderId, o.status, o.amount, o.createdAt, o.updatedAt)
+            from PayPalOrder o
+            where o.orderId = :orderId
+            """)
+    Optional<PayPalOrderDto> findDtoById(@Param("orderId") String orderId);
+}
@@ -0,0 +1,20 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalOrderStatus;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PayPalOrderUpserts {
+
+    /** An order and the lifecycle status it reached. */
+    record StatusAdvance(String orderId, PayPalOrderStatus status) {
+    }
+
+    /**
+     * Moves each order forward to its status, creating the row if needed, sent as one JDBC
+     * batch. A status that is not after the stored one is ignored, so concurrent or late
+     * writes cannot move an order back. Runs in the caller's transaction.
+     */
+    void advanceAll(List<StatusAdvance> advances, Instant now);
+}
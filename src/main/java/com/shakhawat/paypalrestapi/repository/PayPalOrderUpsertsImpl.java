@@ -0,0 +1,43 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+@RequiredArgsConstructor
+class PayPalOrderUpsertsImpl implements PayPalOrderUpserts {
+
+    // COMPLETED is what orders captured before the lifecycle existed were stored with
+    private static final String ADVANCE = """
+            INSERT INTO paypal_order (order_id, status, created_at, updated_at)
+            VALUES (:orderId, :status, :now, :now)
+            ON CONFLICT (order_id) DO UPDATE
+                SET status = EXCLUDED.status, updated_at = EXCLUDED.updated_at
+                WHERE (CASE paypal_order.status
+                           WHEN 'CREATED' THEN 1 WHEN 'SAVED' THEN 1 WHEN 'PAYER_ACTION_REQUIRED' THEN 1
+                           WHEN 'APPROVED' THEN 2 WHEN 'CAPTURED' THEN 3 WHEN 'COMPLETED' THEN 3
+                           WHEN 'PARTIALLY_REFUNDED' THEN 4 WHEN 'REFUNDED' THEN 5 ELSE 0 END)
+                    < (CASE EXCLUDED.status
+                           WHEN 'CREATED' THEN 1 WHEN 'APPROVED' THEN 2 WHEN 'CAPTURED' THEN 3
+                           WHEN 'PARTIALLY_REFUNDED' THEN 4 WHEN 'REFUNDED' THEN 5 ELSE 0 END)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void advanceAll(List<StatusAdvance> advances, Instant now) {
+        SqlParameterSource[] batch = advances.stream()
+                .map(advance -> new MapSqlParameterSource()
+                        .addValue("orderId", advance.orderId(), Types.VARCHAR)
+                        .addValue("status", advance.status().name(), Types.VARCHAR)
+                        .addValue("now", now.atOffset(ZoneOffset.UTC), Types.TIMESTAMP_WITH_TIMEZONE))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(ADVANCE, batch);
+    }
+}
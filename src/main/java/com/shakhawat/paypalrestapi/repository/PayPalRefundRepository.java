@@ -1,10 +1,32 @@
 package com.shakhawat.paypalrestapi.repository;
 
+import com.shakhawat.paypalrestapi.dto.PayPalRefundDto;
 import com.shakhawat.paypalrestapi.entity.PayPalRefund;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface PayPalRefundRepository extends JpaRepository<PayPalRefund, String> {
-}
+public interface PayPalRefundRepository extends JpaRepository<PayPalRefund, String>, PayPalRefundUpserts {
 
+    @Query("""
+            select new com.shakhawat.paypalrestapi.dto.PayPalRefundDto(
+                r.refundId, r.captureId, r.amount, r.status, r.reason, r.createTime, r.updateTime)
+            from PayPalRefund r
+            where r.captureId = :captureId
+            order by r.refundId
+            """)
+    List<PayPalRefundDto> findDtosByCaptureId(@Param("captureId") String captureId);
+
+    @Query("""
+            select new com.shakhawat.paypalrestapi.dto.PayPalRefundDto(
+                r.refundId, r.captureId, r.amount, r.status, r.reason, r.createTime, r.updateTime)
+            from PayPalRefund r
+            where r.captureId in (select c.captureId from PayPalCapture c where c.orderId = :orderId)
+            order by r.captureId, r.refundId
+            """)
+    List<PayPalRefundDto> findDtosByOrderId(@Param("orderId") String orderId);
+}
@@ -0,0 +1,15 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalRefund;
+
+import java.util.List;
+
+public interface PayPalRefundUpserts {
+
+    /**
+     * Inserts each refund or merges it into the stored one, sent as one JDBC batch without
+     * reading the rows first. Null fields keep the stored value, and a stored capture id is
+     * never replaced. Runs in the caller's transaction.
+     */
+    void upsertAll(List<PayPalRefund> refunds);
+}
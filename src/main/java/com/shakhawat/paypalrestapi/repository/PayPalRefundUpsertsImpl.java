@@ -0,0 +1,52 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalRefund;
+import com.shakhawat.paypalrestapi.model.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Types;
+import java.util.List;
+
+@RequiredArgsConstructor
+class PayPalRefundUpsertsImpl implements PayPalRefundUpserts {
+
+    // Amount and currency travel together, so the currency only changes when an amount is given
+    private static final String UPSERT = """
+            INSERT INTO paypal_refunds (refund_id, capture_id, amount_minor, currency, status, reason, create_time, update_time)
+            VALUES (:refundId, :captureId, :amountMinor, :currency, :status, :reason, :createTime, :updateTime)
+            ON CONFLICT (refund_id) DO UPDATE
+                SET capture_id = COALESCE(paypal_refunds.capture_id, EXCLUDED.capture_id),
+                    amount_minor = COALESCE(EXCLUDED.amount_minor, paypal_refunds.amount_minor),
+                    currency = CASE WHEN EXCLUDED.amount_minor IS NULL THEN paypal_refunds.currency ELSE EXCLUDED.currency END,
+                    status = COALESCE(EXCLUDED.status, paypal_refunds.status),
+                    reason = COALESCE(EXCLUDED.reason, paypal_refunds.reason),
+                    create_time = COALESCE(EXCLUDED.create_time, paypal_refunds.create_time),
+                    update_time = COALESCE(EXCLUDED.update_time, paypal_refunds.update_time)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertAll(List<PayPalRefund> refunds) {
+        SqlParameterSource[] batch = refunds.stream()
+                .map(PayPalRefundUpsertsImpl::parameters)
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT, batch);
+    }
+
+    private static SqlParameterSource parameters(PayPalRefund refund) {
+        Money amount = refund.getAmount();
+        return new MapSqlParameterSource()
+                .addValue("refundId", refund.getRefundId(), Types.VARCHAR)
+                .addValue("captureId", refund.getCaptureId(), Types.VARCHAR)
+                .addValue("amountMinor", amount != null ? amount.minorUnits() : null, Types.BIGINT)
+                .addValue("currency", amount != null ? amount.currency().code() : null, Types.VARCHAR)
+                .addValue("status", refund.getStatus(), Types.VARCHAR)
+                .addValue("reason", refund.getReason(), Types.VARCHAR)
+                .addValue("createTime", refund.getCreateTime(), Types.VARCHAR)
+                .addValue("updateTime", refund.getUpdateTime(), Types.VARCHAR);
+    }
+}
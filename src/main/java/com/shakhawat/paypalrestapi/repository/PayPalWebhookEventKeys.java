@@ -0,0 +1,15 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalWebhookEvent;
+
+import java.util.List;
+import java.util.Set;
+
+public interface PayPalWebhookEventKeys {
+
+    /**
+     * Records the PayPal event ids of {@code events} (events without one are ignored) in {@code paypal_webhook_event_key} with one
+     * statement and returns the ids that were not recorded before. Runs in the caller's transaction.
+     */
+    Set<String> registerEventIds(List<PayPalWebhookEvent> events);
+}
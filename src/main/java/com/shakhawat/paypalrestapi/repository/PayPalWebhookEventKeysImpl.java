@@ -0,0 +1,40 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalWebhookEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+class PayPalWebhookEventKeysImpl implements PayPalWebhookEventKeys {
+
+    // Ids repeated within the batch conflict with their first occurrence and are skipped as well
+    private static final String REGISTER = """
+            INSERT INTO paypal_webhook_event_key (event_id, received_at)
+            SELECT * FROM unnest(CAST(? AS varchar[]), CAST(? AS timestamptz[]))
+            ON CONFLICT (event_id) DO NOTHING
+            RETURNING event_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Set<String> registerEventIds(List<PayPalWebhookEvent> events) {
+        List<PayPalWebhookEvent> identified = events.stream().filter(event -> event.getEventId() != null).toList();
+        if (identified.isEmpty()) {
+            return new HashSet<>();
+        }
+        String[] eventIds = identified.stream().map(PayPalWebhookEvent::getEventId).toArray(String[]::new);
+        String[] receivedAt = identified.stream().map(event -> event.getReceivedAt().toString()).toArray(String[]::new);
+        return new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(REGISTER);
+            statement.setArray(1, connection.createArrayOf("varchar", eventIds));
+            statement.setArray(2, connection.createArrayOf("text", receivedAt));
+            return statement;
+        }, (row, rowNum) -> row.getString(1)));
+    }
+}
@@ -1,10 +1,103 @@
 package com.shakhawat.paypalrestapi.repository;
 
+import com.shakhawat.paypalrestapi.dto.PayPalWebhookEventSummaryDto;
 import com.shakhawat.paypalrestapi.entity.PayPalWebhookEvent;
+import com.shakhawat.paypalrestapi.entity.PayPalWebhookEventStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
 
 @Repository
-public interface PayPalWebhookEventRepository extends JpaRepository<PayPalWebhookEvent, Long> {
-}
+public interface PayPalWebhookEventRepository extends JpaRepository<PayPalWebhookEvent, Long>, PayPalWebhookEventKeys {
+
+    /**
+     * Claims up to {@code limit} due events of the partitions {@code owner} holds a live lease on
+     * (see {@code PayPalWebhookLeases}). An event is skipped while an earlier event for the same
+     * resource is still pending or in progress, which keeps per-order ordering across retries and
+     * partition handovers. Earlier means received earlier: ids come from per-instance blocks of the
+     * pooled sequence, so they do not follow arrival across instances and only break ties. SKIP
+     * LOCKED lets several drainers claim concurrently without blocking each other.
+     */
+    @Transactional
+    @Query(value = """
+            WITH claimed AS (
+                UPDATE paypal_webhook_event SET status = 'PROCESSING', attempts = attempts + 1, claimed_at = :now
+                WHERE id IN (
+                    SELECT e.id FROM paypal_webhook_event e
+                    WHERE e.status = 'PENDING'
+                      AND (e.next_attempt_at IS NULL OR e.next_attempt_at <= :now)
+                      AND (hashtext(coalesce(e.resource_id, e.id::text)) & 2147483647) % :partitions IN (
+                          SELECT l.partition_no FROM paypal_webhook_lease l WHERE l.owner = :owner AND l.expires_at > :now)
+                      AND NOT EXISTS (
+                          SELECT 1 FROM paypal_webhook_event p
+                          WHERE p.resource_id = e.resource_id AND (p.received_at, p.id) < (e.received_at, e.id)
+                            AND p.status IN ('PENDING', 'PROCESSING'))
+                    ORDER BY e.received_at, e.id
+                    LIMIT :limit
+                    FOR UPDATE SKIP LOCKED)
+                RETURNING *)
+            SELECT * FROM claimed ORDER BY received_at, id
+            """, nativeQuery = true)
+    List<PayPalWebhookEvent> claimDueEvents(@Param("owner") String owner, @Param("partitions") int partitions,
+                                            @Param("now") Instant now, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("update PayPalWebhookEvent e set e.status = :status, e.processedAt = :processedAt, e.lastError = :lastError where e.id = :id")
+    int markFinished(@Param("id") Long id, @Param("status") PayPalWebhookEventStatus status,
+                     @Param("processedAt") Instant processedAt, @Param("lastError") String lastError);
 
+    @Transactional
+    @Modifying
+    @Query("""
+            update PayPalWebhookEvent e
+            set e.status = com.shakhawat.paypalrestapi.entity.PayPalWebhookEventStatus.PENDING, e.nextAttemptAt = :nextAttemptAt, e.lastError = :lastError
+            where e.id = :id
+            """)
+    int reschedule(@Param("id") Long id, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("lastError") String lastError);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update PayPalWebhookEvent e set e.status = com.shakhawat.paypalrestapi.entity.PayPalWebhookEventStatus.PENDING
+            where e.status = com.shakhawat.paypalrestapi.entity.PayPalWebhookEventStatus.PROCESSING and e.claimedAt < :claimedBefore
+            """)
+    int releaseStaleClaims(@Param("claimedBefore") Instant claimedBefore);
+
+    /**
+     * Events received in {@code [from, to)} after the keyset position {@code (afterReceivedAt, afterId)},
+     * oldest first. Served from {@code idx_webhook_event_received_at} without reading payloads.
+     */
+    @Query("""
+            select new com.shakhawat.paypalrestapi.dto.PayPalWebhookEventSummaryDto(
+                e.id, e.eventId, e.eventType, e.resourceId, e.status, e.attempts, e.receivedAt, e.processedAt)
+            from PayPalWebhookEvent e
+            where e.receivedAt >= :from and e.receivedAt < :to
+              and (e.receivedAt, e.id) > (:afterReceivedAt, :afterId)
+            order by e.receivedAt, e.id
+            """)
+    List<PayPalWebhookEventSummaryDto> findSummaries(@Param("from") Instant from, @Param("to") Instant to,
+                                                     @Param("afterReceivedAt") Instant afterReceivedAt,
+                                                     @Param("afterId") long afterId, Limit limit);
+
+    /** As {@link #findSummaries}, for one event type, served from {@code idx_webhook_event_type_received_at}. */
+    @Query("""
+            select new com.shakhawat.paypalrestapi.dto.PayPalWebhookEventSummaryDto(
+                e.id, e.eventId, e.eventType, e.resourceId, e.status, e.attempts, e.receivedAt, e.processedAt)
+            from PayPalWebhookEvent e
+            where e.eventType = :eventType and e.receivedAt >= :from and e.receivedAt < :to
+              and (e.receivedAt, e.id) > (:afterReceivedAt, :afterId)
+            order by e.receivedAt, e.id
+            """)
+    List<PayPalWebhookEventSummaryDto> findSummariesByType(@Param("eventType") String eventType,
+                                                           @Param("from") Instant from, @Param("to") Instant to,
+                                                           @Param("afterReceivedAt") Instant afterReceivedAt,
+                                                           @Param("afterId") long afterId, Limit limit);
+}
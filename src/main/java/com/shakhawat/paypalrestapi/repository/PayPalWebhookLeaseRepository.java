@@ -0,0 +1,54 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalWebhookLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PayPalWebhookLeaseRepository extends JpaRepository<PayPalWebhookLease, Integer> {
+
+    /** Extends the live leases of {@code owner} and returns their partitions; expired ones are not revived. */
+    @Transactional
+    @Query(value = """
+            WITH renewed AS (
+                UPDATE paypal_webhook_lease SET expires_at = :expiresAt
+                WHERE owner = :owner AND expires_at > :now
+                RETURNING partition_no)
+            SELECT partition_no FROM renewed ORDER BY partition_no
+            """, nativeQuery = true)
+    List<Integer> renew(@Param("owner") String owner, @Param("now") Instant now, @Param("expiresAt") Instant expiresAt);
+
+    /** Takes a partition that has no lease or whose lease expired; returns 1 when taken. */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO paypal_webhook_lease (partition_no, owner, acquired_at, expires_at)
+            VALUES (:partition, :owner, :now, :expiresAt)
+            ON CONFLICT (partition_no) DO UPDATE
+                SET owner = EXCLUDED.owner, acquired_at = EXCLUDED.acquired_at, expires_at = EXCLUDED.expires_at
+                WHERE paypal_webhook_lease.expires_at <= EXCLUDED.acquired_at
+            """, nativeQuery = true)
+    int acquire(@Param("partition") int partition, @Param("owner") String owner,
+                @Param("now") Instant now, @Param("expiresAt") Instant expiresAt);
+
+    @Query("select l.partitionNo from PayPalWebhookLease l where l.expiresAt > :now")
+    List<Integer> findLivePartitions(@Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PayPalWebhookLease l where l.owner = :owner and l.partitionNo in :partitions")
+    int release(@Param("owner") String owner, @Param("partitions") Collection<Integer> partitions);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PayPalWebhookLease l where l.owner = :owner")
+    int releaseAll(@Param("owner") String owner);
+}
@@ -0,0 +1,32 @@
+package com.shakhawat.paypalrestapi.repository;
+
+import com.shakhawat.paypalrestapi.entity.PayPalWebhookNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface PayPalWebhookNodeRepository extends JpaRepository<PayPalWebhookNode, String> {
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO paypal_webhook_node (node_id, started_at, heartbeat_at)
+            VALUES (:nodeId, :now, :now)
+            ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = EXCLUDED.heartbeat_at
+            """, nativeQuery = true)
+    int heartbeat(@Param("nodeId") String nodeId, @Param("now") Instant now);
+
+    @Query("select count(n) from PayPalWebhookNode n where n.heartbeatAt > :since")
+    long countLive(@Param("since") Instant since);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PayPalWebhookNode n where n.heartbeatAt <= :before")
+    int deleteStale(@Param("before") Instant before);
+}
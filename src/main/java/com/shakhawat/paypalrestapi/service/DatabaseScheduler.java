@@ -0,0 +1,105 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Bounded executor for blocking JPA work, so repository calls never run on the
+ * Netty event loop. When the queue is full new work is rejected instead of
+ * piling up, which callers see as a {@link RejectedExecutionException}.
+ */
+@Slf4j
+@Component
+public class DatabaseScheduler {
+
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final Counter rejected;
+
+    public DatabaseScheduler(
+            @Value("${paypal.db.pool-size:10}") int poolSize,
+            @Value("${paypal.db.queue-capacity:1000}") int queueCapacity,
+            @Value("${paypal.db.virtual-threads:false}") boolean virtualThreads,
+            MeterRegistry meterRegistry
+    ) {
+        this.rejected = Counter.builder("paypal.db.rejected")
+                .description("Database tasks rejected because the queue was full")
+                .register(meterRegistry);
+
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory(virtualThreads),
+                (task, pool) -> {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Database queue is full (" + queueCapacity + " pending tasks)");
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.scheduler = Schedulers.fromExecutorService(executor, "paypal-db");
+
+        // Exposes executor.queued, executor.queue.remaining, executor.active, ... tagged name=paypal.db
+        new ExecutorServiceMetrics(executor, "paypal.db", List.of()).bindTo(meterRegistry);
+    }
+
+    public <T> Mono<T> call(Callable<T> task) {
+        return Mono.fromCallable(task).subscribeOn(scheduler);
+    }
+
+    public Mono<Void> run(Runnable task) {
+        return Mono.fromRunnable(task).subscribeOn(scheduler).then();
+    }
+
+    /**
+     * Streams the results of a blocking query. The stream is opened and pulled on this scheduler
+     * only as far as the subscriber has requested, and closed when the flux terminates or is cancelled.
+     */
+    public <T> Flux<T> stream(Supplier<Stream<? extends T>> query) {
+        return Flux.fromStream(query).subscribeOn(scheduler);
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Database executor did not drain within 30s, {} tasks dropped", executor.shutdownNow().size());
+        }
+        scheduler.dispose();
+    }
+
+    private static ThreadFactory threadFactory(boolean virtualThreads) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name("paypal-db-", 0).factory();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "paypal-db-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
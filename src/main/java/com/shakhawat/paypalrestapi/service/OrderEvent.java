@@ -0,0 +1,57 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.Money;
+import com.shakhawat.paypalrestapi.model.RefundResource;
+
+import java.time.Instant;
+
+/**
+ * Something that happened to an order, from a PayPal API response or a webhook. Captures and
+ * refunds carry their PayPal id, so seeing the same one twice changes nothing. A refund may
+ * not know its order yet; {@link PayPalOrderProjection} finds it through the capture.
+ */
+public record OrderEvent(Type type, String orderId, String captureId, String refundId, Money amount, Instant occurredAt) {
+
+    public enum Type {
+        CREATED,
+        APPROVED,
+        CAPTURED,
+        REFUNDED
+    }
+
+    public static OrderEvent created(String orderId) {
+        return new OrderEvent(Type.CREATED, orderId, null, null, null, Instant.now());
+    }
+
+    public static OrderEvent approved(String orderId) {
+        return new OrderEvent(Type.APPROVED, orderId, null, null, null, Instant.now());
+    }
+
+    /** The event for a capture, or null while PayPal has not completed it. */
+    public static OrderEvent captured(String orderId, CaptureResource capture) {
+        if (capture == null || capture.id() == null || !"COMPLETED".equalsIgnoreCase(capture.status())) {
+            return null;
+        }
+        String order = orderId != null ? orderId : capture.orderId() != null ? capture.orderId() : capture.invoiceId();
+        return new OrderEvent(Type.CAPTURED, order, capture.id(), null, capture.amount(), Instant.now());
+    }
+
+    /** The event for a refund, or null when it failed or was cancelled. */
+    public static OrderEvent refunded(RefundResource refund, String fallbackCaptureId) {
+        if (refund == null || refund.id() == null
+                || "FAILED".equalsIgnoreCase(refund.status()) || "CANCELLED".equalsIgnoreCase(refund.status())) {
+            return null;
+        }
+        String captureId = refund.resolveCaptureId() != null ? refund.resolveCaptureId() : fallbackCaptureId;
+        return new OrderEvent(Type.REFUNDED, refund.orderId(), captureId, refund.id(), refund.amount(), Instant.now());
+    }
+
+    public OrderEvent withOrderId(String orderId) {
+        return new OrderEvent(type, orderId, captureId, refundId, amount, occurredAt);
+    }
+
+    public OrderEvent at(Instant occurredAt) {
+        return new OrderEvent(type, orderId, captureId, refundId, amount, occurredAt);
+    }
+}
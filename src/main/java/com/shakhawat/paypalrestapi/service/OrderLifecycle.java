@@ -0,0 +1,113 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.entity.PayPalOrderStatus;
+import com.shakhawat.paypalrestapi.model.Money;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What is known about one order: whether it was approved and which captures and refunds
+ * exist, keyed by their PayPal ids. The status is derived from these facts rather than from
+ * the last event, so events applied in any order, or more than once, give the same status.
+ * {@code reached} is the furthest status already seen (or stored), below which the order
+ * never goes back. Instances are immutable.
+ */
+public record OrderLifecycle(
+        PayPalOrderStatus reached,
+        boolean approved,
+        Map<String, Money> captures,
+        Map<String, Refund> refunds,
+        Instant updatedAt
+) {
+
+    public static final OrderLifecycle EMPTY = new OrderLifecycle(null, false, Map.of(), Map.of(), Instant.EPOCH);
+
+    /** A refund of a capture; without an amount it refunded the whole capture. */
+    public record Refund(String captureId, Money amount) {
+    }
+
+    public static OrderLifecycle stored(PayPalOrderStatus status, Instant updatedAt) {
+        return new OrderLifecycle(status, false, Map.of(), Map.of(), updatedAt != null ? updatedAt : Instant.EPOCH);
+    }
+
+    public OrderLifecycle apply(OrderEvent event) {
+        PayPalOrderStatus status = status();
+        Instant updated = latest(updatedAt, event.occurredAt());
+        return switch (event.type()) {
+            case CREATED -> new OrderLifecycle(PayPalOrderStatus.latest(status, PayPalOrderStatus.CREATED),
+                    approved, captures, refunds, updated);
+            case APPROVED -> new OrderLifecycle(status, true, captures, refunds, updated);
+            case CAPTURED -> new OrderLifecycle(status, approved, with(captures, event.captureId(), event.amount()), refunds, updated);
+            case REFUNDED -> new OrderLifecycle(status, approved, captures,
+                    with(refunds, event.refundId(), new Refund(event.captureId(), event.amount())), updated);
+        };
+    }
+
+    /** Both sets of facts together, e.g. an order loaded from the database and the events seen meanwhile. */
+    public OrderLifecycle merge(OrderLifecycle other) {
+        Map<String, Money> mergedCaptures = new HashMap<>(captures);
+        mergedCaptures.putAll(other.captures);
+        Map<String, Refund> mergedRefunds = new HashMap<>(refunds);
+        mergedRefunds.putAll(other.refunds);
+        return new OrderLifecycle(PayPalOrderStatus.latest(status(), other.status()), approved || other.approved,
+                Collections.unmodifiableMap(mergedCaptures), Collections.unmodifiableMap(mergedRefunds),
+                latest(updatedAt, other.updatedAt));
+    }
+
+    public PayPalOrderStatus status() {
+        return PayPalOrderStatus.latest(reached, derived());
+    }
+
+    private PayPalOrderStatus derived() {
+        if (!refunds.isEmpty()) {
+            Money captured = captured();
+            Money refunded = refunded();
+            boolean full = captured != null && refunded != null && refunded.currency() == captured.currency()
+                    && refunded.minorUnits() >= captured.minorUnits();
+            return full ? PayPalOrderStatus.REFUNDED : PayPalOrderStatus.PARTIALLY_REFUNDED;
+        }
+        if (!captures.isEmpty()) {
+            return PayPalOrderStatus.CAPTURED;
+        }
+        return approved ? PayPalOrderStatus.APPROVED : null;
+    }
+
+    /** The captured total, or null when unknown or in more than one currency. */
+    public Money captured() {
+        return sum(captures.values());
+    }
+
+    /** The refunded total, or null when unknown or in more than one currency. */
+    public Money refunded() {
+        return sum(refunds.values().stream()
+                .map(refund -> refund.amount() != null ? refund.amount() : captures.get(refund.captureId()))
+                .toList());
+    }
+
+    private static Money sum(Iterable<Money> amounts) {
+        Money total = null;
+        for (Money amount : amounts) {
+            if (amount == null || (total != null && total.currency() != amount.currency())) {
+                return null;
+            }
+            total = total == null ? amount : total.plus(amount);
+        }
+        return total;
+    }
+
+    private static <V> Map<String, V> with(Map<String, V> map, String key, V value) {
+        if (key == null || (map.containsKey(key) && map.get(key) != null)) {
+            return map;
+        }
+        Map<String, V> copy = new HashMap<>(map);
+        copy.put(key, value);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        return b != null && b.isAfter(a) ? b : a;
+    }
+}
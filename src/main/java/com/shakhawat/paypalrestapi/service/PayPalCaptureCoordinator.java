@@ -0,0 +1,171 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.entity.PayPalCaptureClaim;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure an order is captured once, whether the capture comes from the capture endpoint
+ * or from the auto-capture of an approval webhook, on this node or another. Concurrent
+ * captures of an order on this node share one execution. Across nodes the first to insert
+ * the order's {@code paypal_capture_claim} row calls PayPal and stores the response there;
+ * the others poll the row for up to {@code max-wait} and return the stored response. A claim
+ * whose holder died expires after {@code claim-ttl} and is taken over. The capture request
+ * still carries its PayPal-Request-Id, so even a takeover cannot capture twice.
+ * <p>
+ * {@code paypal.capture.coordination} counts captures by how they were served: {@code led}
+ * (this node called PayPal), {@code joined} (shared a capture in flight on this node),
+ * {@code awaited} (waited for another node), {@code replayed} (already captured) and
+ * {@code timed-out}. {@code paypal.capture.claim.wait} times the waits for another node.
+ */
+@Slf4j
+@Service
+public class PayPalCaptureCoordinator {
+
+    /** Another node is still capturing the order; the capture can be asked for again later. */
+    public static class CaptureInProgressException extends RuntimeException {
+        public CaptureInProgressException(String orderId) {
+            super("Order " + orderId + " is being captured by another request");
+        }
+    }
+
+    private final PayPalService payPalService;
+    private final PayPalDataService dataService;
+    private final ObjectMapper objectMapper;
+    private final String owner;
+    private final Duration claimTtl;
+    private final Duration maxWait;
+    private final Duration pollInterval;
+
+    private final Map<String, Mono<OrderResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter led;
+    private final Counter joined;
+    private final Counter awaited;
+    private final Counter replayed;
+    private final Counter timedOut;
+    private final Timer waits;
+
+    public PayPalCaptureCoordinator(
+            PayPalService payPalService,
+            PayPalDataService dataService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${paypal.capture.claim-ttl:2m}") Duration claimTtl,
+            @Value("${paypal.capture.max-wait:10s}") Duration maxWait,
+            @Value("${paypal.capture.poll-interval:200ms}") Duration pollInterval
+    ) {
+        this.payPalService = payPalService;
+        this.dataService = dataService;
+        this.objectMapper = objectMapper;
+        this.owner = UUID.randomUUID().toString();
+        this.claimTtl = claimTtl;
+        this.maxWait = maxWait;
+        this.pollInterval = pollInterval;
+        this.led = counter(meterRegistry, "led");
+        this.joined = counter(meterRegistry, "joined");
+        this.awaited = counter(meterRegistry, "awaited");
+        this.replayed = counter(meterRegistry, "replayed");
+        this.timedOut = counter(meterRegistry, "timed-out");
+        this.waits = Timer.builder("paypal.capture.claim.wait").register(meterRegistry);
+        Gauge.builder("paypal.capture.in-flight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Captures an order, or returns the response of the capture that already happened. Fails
+     * with {@link CaptureInProgressException} when another node holds the claim for longer
+     * than {@code max-wait}.
+     */
+    public Mono<OrderResponse> capture(String orderId) {
+        return Mono.defer(() -> {
+            boolean[] started = new boolean[1];
+            Mono<OrderResponse> capture = inFlight.computeIfAbsent(orderId, id -> {
+                started[0] = true;
+                return coordinate(id, System.nanoTime(), false)
+                        .doFinally(signal -> inFlight.remove(id))
+                        .cache();
+            });
+            if (!started[0]) {
+                joined.increment();
+            }
+            return capture;
+        });
+    }
+
+    private Mono<OrderResponse> coordinate(String orderId, long startedAt, boolean waited) {
+        return dataService.claimCapture(orderId, owner, claimTtl).flatMap(claimed -> {
+            if (claimed) {
+                led.increment();
+                return lead(orderId);
+            }
+            return dataService.findCaptureClaim(orderId)
+                    .filter(claim -> claim.getStatus() == PayPalCaptureClaim.Status.COMPLETED)
+                    .map(claim -> {
+                        if (waited) {
+                            awaited.increment();
+                            waits.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                        } else {
+                            replayed.increment();
+                        }
+                        return read(claim.getResponse());
+                    })
+                    // Still claimed elsewhere, or released after a failure: try again shortly
+                    .switchIfEmpty(Mono.defer(() -> {
+                        if (System.nanoTime() - startedAt >= maxWait.toNanos()) {
+                            timedOut.increment();
+                            waits.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                            return Mono.error(new CaptureInProgressException(orderId));
+                        }
+                        return Mono.delay(pollInterval).then(coordinate(orderId, startedAt, true));
+                    }));
+        });
+    }
+
+    private Mono<OrderResponse> lead(String orderId) {
+        return payPalService.withAccessToken(token -> payPalService.captureOrder(token, orderId))
+                .flatMap(response -> dataService.completeCaptureClaim(orderId, owner, write(response)).thenReturn(response))
+                // Repeating a capture is safe (same PayPal-Request-Id), so a failure just frees the claim
+                .onErrorResume(e -> dataService.releaseCaptureClaim(orderId, owner)
+                        .onErrorResume(releaseError -> {
+                            log.warn("Could not release capture claim of order {}; it expires after {}", orderId, claimTtl, releaseError);
+                            return Mono.empty();
+                        })
+                        .then(Mono.error(e)));
+    }
+
+    private String write(OrderResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private OrderResponse read(String response) {
+        try {
+            return objectMapper.readValue(response, OrderResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("paypal.capture.coordination").tag("result", result).register(meterRegistry);
+    }
+}
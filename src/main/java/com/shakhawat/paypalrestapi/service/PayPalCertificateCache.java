@@ -0,0 +1,108 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory cache of PayPal webhook signing certificates keyed by {@code paypal-cert-url}.
+ * Only https URLs on the pinned PayPal hosts are fetched. Concurrent lookups of the same
+ * URL share one download, and failed downloads are not cached.
+ */
+@Slf4j
+@Component
+public class PayPalCertificateCache {
+
+    // PayPal rotates few certificates; anything beyond this is noise or abuse
+    private static final int MAX_ENTRIES = 32;
+
+    private final Map<String, Mono<X509Certificate>> certificates = new ConcurrentHashMap<>();
+
+    private final WebClient webClient;
+    private final Set<String> allowedHosts;
+    private final Duration ttl;
+    private final Duration downloadTimeout;
+
+    public PayPalCertificateCache(
+            ConnectionProvider payPalConnectionProvider,
+            @Value("${paypal.webhook.cert.allowed-hosts:api.paypal.com,api.sandbox.paypal.com,api-m.paypal.com,api-m.sandbox.paypal.com}") List<String> allowedHosts,
+            @Value("${paypal.webhook.cert.ttl:24h}") Duration ttl,
+            @Value("${paypal.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${paypal.http.timeout.verify:10s}") Duration downloadTimeout
+    ) {
+        // Downloads are part of webhook verification, so they share the PayPal pool and the verify timeout
+        HttpClient httpClient = HttpClient.create(payPalConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(downloadTimeout);
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.downloadTimeout = downloadTimeout;
+        this.allowedHosts = allowedHosts.stream()
+                .map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.ttl = ttl;
+    }
+
+    public Mono<X509Certificate> getCertificate(String certUrl) {
+        URI uri;
+        try {
+            uri = URI.create(certUrl);
+        } catch (RuntimeException e) {
+            return Mono.error(new IllegalArgumentException("Malformed webhook certificate URL: " + certUrl, e));
+        }
+        if (!"https".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null
+                || !allowedHosts.contains(uri.getHost().toLowerCase(Locale.ROOT))) {
+            return Mono.error(new IllegalArgumentException("Webhook certificate URL is not on the allowed PayPal hosts: " + certUrl));
+        }
+
+        if (certificates.size() >= MAX_ENTRIES && !certificates.containsKey(certUrl)) {
+            certificates.clear();
+        }
+        return certificates.computeIfAbsent(certUrl, url -> download(uri)
+                .cache(this::timeToLive, e -> Duration.ZERO, () -> Duration.ZERO));
+    }
+
+    private Mono<X509Certificate> download(URI uri) {
+        return webClient.get()
+                .uri(uri)
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .timeout(downloadTimeout)
+                .map(pem -> {
+                    try {
+                        X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                                .generateCertificate(new ByteArrayInputStream(pem));
+                        certificate.checkValidity();
+                        log.info("Cached PayPal webhook certificate {} valid until {}", uri, certificate.getNotAfter());
+                        return certificate;
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Invalid PayPal webhook certificate at " + uri, e);
+                    }
+                });
+    }
+
+    private Duration timeToLive(X509Certificate certificate) {
+        Duration untilExpiry = Duration.between(Instant.now(), certificate.getNotAfter().toInstant());
+        return untilExpiry.compareTo(ttl) < 0 ? untilExpiry : ttl;
+    }
+}
@@ -3,22 +3,48 @@ package com.shakhawat.paypalrestapi.service;
 import com.shakhawat.paypalrestapi.dto.PayPalOrderDto;
 import com.shakhawat.paypalrestapi.dto.PayPalWebhookEventDto;
 import com.shakhawat.paypalrestapi.entity.PayPalCapture;
+import com.shakhawat.paypalrestapi.entity.PayPalCaptureClaim;
+import com.shakhawat.paypalrestapi.entity.PayPalIdempotencyRecord;
 import com.shakhawat.paypalrestapi.entity.PayPalOrder;
+import com.shakhawat.paypalrestapi.entity.PayPalOrderStatus;
 import com.shakhawat.paypalrestapi.entity.PayPalRefund;
 import com.shakhawat.paypalrestapi.entity.PayPalWebhookEvent;
+import com.shakhawat.paypalrestapi.entity.PayPalWebhookEventStatus;
 import com.shakhawat.paypalrestapi.mapper.PayPalOrderMapper;
 import com.shakhawat.paypalrestapi.mapper.PayPalWebhookEventMapper;
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.Money;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import com.shakhawat.paypalrestapi.model.RefundResource;
+import com.shakhawat.paypalrestapi.repository.PayPalCaptureClaimRepository;
 import com.shakhawat.paypalrestapi.repository.PayPalCaptureRepository;
+import com.shakhawat.paypalrestapi.repository.PayPalCaptureUpserts.CaptureUpsert;
+import com.shakhawat.paypalrestapi.repository.PayPalIdempotencyRecordRepository;
 import com.shakhawat.paypalrestapi.repository.PayPalOrderRepository;
+import com.shakhawat.paypalrestapi.repository.PayPalOrderUpserts.StatusAdvance;
 import com.shakhawat.paypalrestapi.repository.PayPalRefundRepository;
 import com.shakhawat.paypalrestapi.repository.PayPalWebhookEventRepository;
+import com.shakhawat.paypalrestapi.service.PayPalLookupCache.StoredCapture;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -29,154 +55,311 @@ public class PayPalDataService {
     private final PayPalCaptureRepository captureRepository;
     private final PayPalWebhookEventRepository webhookEventRepository;
     private final PayPalRefundRepository refundRepository;
+    private final PayPalIdempotencyRecordRepository idempotencyRecordRepository;
+    private final PayPalLookupCache lookupCache;
+    private final PayPalCaptureClaimRepository captureClaimRepository;
+    private final DatabaseScheduler databaseScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
 
-    public PayPalOrderDto saveOrder(String orderId, String status, Double amount, String currency) {
-        PayPalOrder entity = PayPalOrder.builder()
-                .orderId(orderId)
-                .status(status)
-                .amount(amount)
-                .currency(currency)
-                .createdAt(Instant.now())
-                .updatedAt(Instant.now())
-                .build();
-        entity = orderRepository.save(entity);
-        return PayPalOrderMapper.toDto(entity);
+    @Value("${paypal.db.batch.max-size:100}")
+    private int batchMaxSize;
+
+    @Value("${paypal.db.batch.max-delay:10ms}")
+    private Duration batchMaxDelay;
+
+    @Value("${paypal.db.batch.capacity:10000}")
+    private int batchCapacity;
+
+    // Webhook events are always written with COMMIT durability: PayPal is only acknowledged once they are stored
+    @Value("${paypal.db.batch.durability:commit}")
+    private WriteBehindBatcher.Durability batchDurability;
+
+    private WriteBehindBatcher<WebhookEventWrite, PayPalWebhookEventDto> webhookEventWrites;
+    private WriteBehindBatcher<CaptureUpsert, Void> captureWrites;
+    private WriteBehindBatcher<RefundWrite, Void> refundWrites;
+    private WriteBehindBatcher<StatusAdvance, Void> orderStatusWrites;
+
+    private record WebhookEventWrite(String eventId, String eventType, String resourceId, String eventData, Instant receivedAt) {
+    }
+
+    private record RefundWrite(RefundResource resource, String fallbackCaptureId) {
+    }
+
+    @PostConstruct
+    public void init() {
+        this.webhookEventWrites = new WriteBehindBatcher<>("webhook-events", batchMaxSize, batchMaxDelay, batchCapacity,
+                WriteBehindBatcher.Durability.COMMIT, this::writeWebhookEvents, databaseScheduler, transactionTemplate, meterRegistry);
+        this.captureWrites = new WriteBehindBatcher<>("captures", batchMaxSize, batchMaxDelay, batchCapacity,
+                batchDurability, this::writeCaptures, databaseScheduler, transactionTemplate, meterRegistry);
+        this.refundWrites = new WriteBehindBatcher<>("refunds", batchMaxSize, batchMaxDelay, batchCapacity,
+                batchDurability, this::writeRefunds, databaseScheduler, transactionTemplate, meterRegistry);
+        this.orderStatusWrites = new WriteBehindBatcher<>("order-statuses", batchMaxSize, batchMaxDelay, batchCapacity,
+                batchDurability, this::writeOrderStatuses, databaseScheduler, transactionTemplate, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        webhookEventWrites.shutdown();
+        captureWrites.shutdown();
+        refundWrites.shutdown();
+        orderStatusWrites.shutdown();
+    }
+
+    public Mono<PayPalOrderDto> saveOrder(String orderId, String status, Money amount) {
+        return observed("save-order", databaseScheduler.call(() -> {
+            PayPalOrder entity = PayPalOrder.builder()
+                    .orderId(orderId)
+                    .status(status)
+                    .amount(amount)
+                    .createdAt(Instant.now())
+                    .updatedAt(Instant.now())
+                    .build();
+            entity = orderRepository.save(entity);
+            lookupCache.orderChanged(orderId);
+            return PayPalOrderMapper.toDto(entity);
+        }));
     }
 
-    public void saveCapturedPayment(
+    /**
+     * Stores a lifecycle status, unless the order is already further along. Statuses saved
+     * together, e.g. for a batch of orders, are written in one batch.
+     */
+    public Mono<Void> saveOrderStatus(String orderId, PayPalOrderStatus status) {
+        return observed("save-order-status", orderStatusWrites.submit(new StatusAdvance(orderId, status)));
+    }
+
+    public Mono<Void> saveCapturedPayment(
             String orderId,
             String captureId,
-            Double amount,
-            String currency,
+            Money amount,
             String status,
             String payerEmail,
             String paymentMethod,
+            String createTime,
             String updateTime
     ) {
         PayPalCapture capture = PayPalCapture.builder()
                 .captureId(captureId)
                 .orderId(orderId)
                 .amount(amount)
-                .currency(currency)
                 .status(status)
                 .payerEmail(payerEmail)
                 .paymentMethod(paymentMethod)
+                .createTime(createTime)
                 .updateTime(updateTime)
                 .build();
 
-        captureRepository.save(capture);
+        return observed("save-capture", captureWrites.submit(new CaptureUpsert(capture, true)));
+    }
 
-        Optional<PayPalOrder> order = orderRepository.findById(orderId);
-        if(order.isPresent()) {
-            order.get().setAmount(amount);
-            order.get().setCurrency(currency);
-            orderRepository.save(order.get());
+    /** Stores the capture in a capture-order response and completes with it. */
+    public Mono<CaptureResource> saveCapturedOrder(String orderId, OrderResponse response) {
+        CaptureResource capture = response.firstCapture();
+        if (capture == null || capture.amount() == null) {
+            return Mono.error(new IllegalStateException("Unexpected capture structure"));
         }
+        String payerEmail = response.payer() != null ? response.payer().emailAddress() : null;
+        return saveCapturedPayment(orderId, capture.id(), capture.amount(), capture.status(), payerEmail, "PayPal",
+                capture.createTime(), capture.updateTime())
+                .thenReturn(capture);
     }
 
-    public PayPalWebhookEventDto saveWebhookEvent(String eventType, String eventData) {
-        PayPalWebhookEvent entity = PayPalWebhookEvent.builder()
-                .eventType(eventType)
-                .eventData(eventData)
-                .receivedAt(Instant.now())
-                .build();
-        entity = webhookEventRepository.save(entity);
-        return PayPalWebhookEventMapper.toDto(entity);
+    public Mono<PayPalWebhookEventDto> saveWebhookEvent(String eventId, String eventType, String resourceId, String eventData) {
+        return observed("save-webhook-event", webhookEventWrites.submit(new WebhookEventWrite(eventId, eventType, resourceId, eventData, Instant.now())));
+    }
+
+    public Mono<List<PayPalWebhookEventDto>> claimWebhookEvents(String owner, int partitions, int limit) {
+        return databaseScheduler.call(() -> webhookEventRepository.claimDueEvents(owner, partitions, Instant.now(), limit).stream()
+                .map(PayPalWebhookEventMapper::toDto)
+                .toList());
+    }
+
+    public Mono<Void> markWebhookEventProcessed(Long id) {
+        return observed("finish-webhook-event", databaseScheduler.run(() -> webhookEventRepository.markFinished(id, PayPalWebhookEventStatus.PROCESSED, Instant.now(), null)));
+    }
+
+    public Mono<Void> deadLetterWebhookEvent(Long id, String error) {
+        return observed("finish-webhook-event", databaseScheduler.run(() -> webhookEventRepository.markFinished(id, PayPalWebhookEventStatus.DEAD_LETTER, Instant.now(), truncate(error))));
+    }
+
+    public Mono<Void> rescheduleWebhookEvent(Long id, Instant nextAttemptAt, String error) {
+        return observed("reschedule-webhook-event", databaseScheduler.run(() -> webhookEventRepository.reschedule(id, nextAttemptAt, truncate(error))));
+    }
+
+    public Mono<Integer> releaseStaleWebhookEvents(Instant claimedBefore) {
+        return databaseScheduler.call(() -> webhookEventRepository.releaseStaleClaims(claimedBefore));
     }
 
-    public void saveRefund(Map<String, Object> resource, String fallbackCaptureId) {
-        if (resource == null || resource.isEmpty()) {
+    public Mono<Void> saveRefund(RefundResource resource, String fallbackCaptureId) {
+        if (resource == null) {
             log.warn("Refund resource is null or empty");
-            return;
+            return Mono.empty();
         }
-
-        try {
-            String refundId = (String) resource.get("id");
-            if (refundId == null) {
-                log.warn("No refund ID found in webhook resource");
-                return;
-            }
-
-            PayPalRefund refund = refundRepository.findById(refundId).orElse(new PayPalRefund());
-            refund.setRefundId(refundId);
-
-            // Don't overwrite existing captureId if it was saved from API
-            String captureId = (String) resource.get("capture_id");
-            if (captureId == null) {
-                captureId = (String) resource.get("invoice_id");
-            }
-            if (captureId == null) {
-                captureId = fallbackCaptureId;
-            }
-
-            if (refund.getCaptureId() == null && captureId != null) {
-                refund.setCaptureId(captureId);
-            }
-
-            Map<String, Object> amountObj = (Map<String, Object>) resource.get("amount");
-            if (amountObj != null) {
-                refund.setAmount(Double.valueOf((String) amountObj.get("value")));
-                refund.setCurrency((String) amountObj.get("currency_code"));
-            }
-
-            if (resource.get("status") != null) {
-                refund.setStatus((String) resource.get("status"));
-            }
-
-            if (resource.get("note_to_payer") != null) {
-                refund.setReason((String) resource.get("note_to_payer"));
-            }
-
-            if (resource.get("create_time") != null) {
-                refund.setCreateTime((String) resource.get("create_time"));
-            }
-
-            if (resource.get("update_time") != null) {
-                refund.setUpdateTime((String) resource.get("update_time"));
-            }
-
-            refundRepository.save(refund);
-            log.info("Refund [{}] saved/updated", refundId);
-
-        } catch (Exception e) {
-            log.error("Failed to save PayPal refund", e);
+        if (resource.id() == null) {
+            log.warn("No refund ID found in webhook resource");
+            return Mono.empty();
         }
+        return observed("save-refund", refundWrites.submit(new RefundWrite(resource, fallbackCaptureId)))
+                .doOnSuccess(ignored -> log.info("Refund [{}] saved/updated", resource.id()))
+                // Signalled, so the webhook inbox retries the event rather than marking it processed
+                .doOnError(e -> log.error("Failed to save PayPal refund", e));
     }
 
-    public void saveCapture(Map<String, Object> captureData) {
-        if (captureData == null || captureData.isEmpty()) {
+    public Mono<Void> saveCapture(CaptureResource captureData) {
+        if (captureData == null) {
             log.warn("Empty or null capture data received");
-            return;
+            return Mono.empty();
+        }
+        if (captureData.id() == null) {
+            log.warn("Missing capture_id in captureData");
+            return Mono.empty();
         }
 
-        try {
-            String captureId = (String) captureData.get("id");
-            if (captureId == null) {
-                log.warn("Missing capture_id in captureData");
-                return;
-            }
-
-            Map<String, Object> amountObj = (Map<String, Object>) captureData.get("amount");
-
-            PayPalCapture capture = PayPalCapture.builder()
-                    .captureId(captureId)
-                    .orderId((String) captureData.get("invoice_id"))
-                    .status((String) captureData.get("status"))
-                    .amount(amountObj != null ? Double.valueOf((String) amountObj.get("value")) : null)
-                    .currency(amountObj != null ? (String) amountObj.get("currency_code") : null)
-                    .updateTime((String) captureData.get("update_time"))
-                    .build();
+        PayPalCapture capture = PayPalCapture.builder()
+                .captureId(captureData.id())
+                .orderId(captureData.orderId() != null ? captureData.orderId() : captureData.invoiceId())
+                .status(captureData.status())
+                .amount(captureData.amount())
+                .createTime(captureData.createTime())
+                .updateTime(captureData.updateTime())
+                .build();
 
-            captureRepository.save(capture);
+        return observed("save-capture", captureWrites.submit(new CaptureUpsert(capture, false)))
+                .doOnSuccess(ignored -> log.info("Saved capture [{}] successfully", capture.getCaptureId()))
+                .doOnError(e -> log.error("Error while saving PayPal capture", e));
+    }
 
-            log.info("Saved capture [{}] successfully", captureId);
-        } catch (Exception e) {
-            log.error("Error while saving PayPal capture", e);
-        }
+    public Mono<Boolean> captureExists(String captureId) {
+        return findCapture(captureId).map(Optional::isPresent);
+    }
+
+    /** The order of a stored capture; empty when the capture or its order is not known. */
+    public Mono<String> findOrderIdByCapture(String captureId) {
+        return findCapture(captureId).mapNotNull(capture -> capture.map(StoredCapture::orderId).orElse(null));
+    }
+
+    private Mono<Optional<StoredCapture>> findCapture(String captureId) {
+        return lookupCache.getCaptures().get(captureId, () -> captureRepository.findById(captureId)
+                .map(capture -> new StoredCapture(capture.getOrderId())));
+    }
+
+    public Mono<PayPalIdempotencyRecord> findIdempotencyRecord(String idempotencyKey) {
+        return databaseScheduler.call(() -> idempotencyRecordRepository
+                .findByIdempotencyKeyAndExpiresAtAfter(idempotencyKey, Instant.now())
+                .orElse(null));
+    }
+
+    public Mono<Void> saveIdempotencyRecord(String idempotencyKey, String operation, String requestHash, String responseBody, Duration ttl) {
+        return observed("save-idempotency-record", databaseScheduler.run(() -> {
+            Instant now = Instant.now();
+            idempotencyRecordRepository.insertIfAbsent(idempotencyKey, operation, requestHash, responseBody, now, now.plus(ttl));
+        }));
+    }
+
+    /** Claims the capture of an order for {@code owner} until {@code ttl} passes; true when claimed. */
+    public Mono<Boolean> claimCapture(String orderId, String owner, Duration ttl) {
+        return observed("claim-capture", databaseScheduler.call(() -> {
+            Instant now = Instant.now();
+            return captureClaimRepository.claim(orderId, owner, now, now.plus(ttl)) == 1;
+        }));
+    }
+
+    public Mono<Void> completeCaptureClaim(String orderId, String owner, String response) {
+        return observed("complete-capture-claim", databaseScheduler.run(() -> captureClaimRepository.complete(orderId, owner, response)));
+    }
+
+    public Mono<Void> releaseCaptureClaim(String orderId, String owner) {
+        return observed("release-capture-claim", databaseScheduler.run(() -> captureClaimRepository.release(orderId, owner)));
+    }
+
+    public Mono<PayPalCaptureClaim> findCaptureClaim(String orderId) {
+        return databaseScheduler.call(() -> captureClaimRepository.findById(orderId).orElse(null));
+    }
+
+    public Mono<Integer> deleteExpiredIdempotencyRecords() {
+        return databaseScheduler.call(() -> idempotencyRecordRepository.deleteExpired(Instant.now()));
+    }
+
+    /**
+     * A write observed as {@code paypal.db.writes} tagged with the operation. The time includes
+     * waiting for the database pool or a batch; {@code paypal.db.batch.write} times the batch
+     * transactions alone.
+     */
+    private <T> Mono<T> observed(String operation, Mono<T> write) {
+        return write.name("paypal.db.writes")
+                .tag("operation", operation)
+                .tap(Micrometer.observation(observationRegistry));
+    }
+
+    /**
+     * Stores a batch of webhook events; a write whose PayPal event id was already stored
+     * (including earlier in the same batch) is skipped and yields null, i.e. a duplicate.
+     */
+    private List<PayPalWebhookEventDto> writeWebhookEvents(List<WebhookEventWrite> writes) {
+        List<PayPalWebhookEvent> entities = writes.stream()
+                .map(write -> PayPalWebhookEvent.builder()
+                        .eventId(write.eventId())
+                        .eventType(write.eventType())
+                        .eventData(write.eventData())
+                        .receivedAt(write.receivedAt())
+                        .resourceId(write.resourceId())
+                        .status(PayPalWebhookEventStatus.PENDING)
+                        .build())
+                .toList();
+
+        Set<String> newEventIds = webhookEventRepository.registerEventIds(entities);
+        List<PayPalWebhookEvent> accepted = entities.stream()
+                .filter(entity -> entity.getEventId() == null || newEventIds.remove(entity.getEventId()))
+                .toList();
+        webhookEventRepository.saveAllAndFlush(accepted);
+
+        return entities.stream()
+                .map(entity -> entity.getId() != null ? PayPalWebhookEventMapper.toDto(entity) : null)
+                .toList();
+    }
+
+    private List<Void> writeCaptures(List<CaptureUpsert> writes) {
+        captureRepository.upsertAll(writes);
+        writes.forEach(write -> lookupCache.captureStored(write.capture().getCaptureId(), write.capture().getOrderId()));
+        return Collections.nCopies(writes.size(), null);
+    }
+
+    private List<Void> writeOrderStatuses(List<StatusAdvance> writes) {
+        // Batched inserts are rewritten into one statement, which may upsert each order only once
+        Map<String, PayPalOrderStatus> latest = new LinkedHashMap<>();
+        writes.forEach(write -> latest.merge(write.orderId(), write.status(), PayPalOrderStatus::latest));
+        orderRepository.advanceAll(latest.entrySet().stream()
+                .map(entry -> new StatusAdvance(entry.getKey(), entry.getValue()))
+                .toList(), Instant.now());
+        latest.keySet().forEach(lookupCache::orderChanged);
+        return Collections.nCopies(writes.size(), null);
+    }
+
+    private List<Void> writeRefunds(List<RefundWrite> writes) {
+        List<PayPalRefund> refunds = writes.stream().map(PayPalDataService::toRefund).toList();
+        refundRepository.upsertAll(refunds);
+        refunds.forEach(refund -> lookupCache.refundStored(refund.getCaptureId()));
+        return Collections.nCopies(writes.size(), null);
+    }
+
+    private static PayPalRefund toRefund(RefundWrite write) {
+        RefundResource resource = write.resource();
+        String captureId = resource.resolveCaptureId();
+        return PayPalRefund.builder()
+                .refundId(resource.id())
+                .captureId(captureId != null ? captureId : write.fallbackCaptureId())
+                .amount(resource.amount())
+                .status(resource.status())
+                .reason(resource.noteToPayer())
+                .createTime(resource.createTime())
+                .updateTime(resource.updateTime())
+                .build();
     }
 
-    public boolean captureExists(String captureId) {
-        return captureRepository.existsById(captureId); // Assuming you have this method
+    private static String truncate(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
     }
 
 }
@@ -0,0 +1,195 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the response of create, capture and refund requests by idempotency key, so a
+ * repeated request is answered with the stored response instead of calling PayPal again.
+ * Recent responses are kept in memory over the {@code paypal_idempotency_key} table, and
+ * concurrent requests with the same key on this node share a single execution.
+ * Only successful responses are stored; a failed request can simply be repeated.
+ */
+@Slf4j
+@Service
+public class PayPalIdempotencyStore {
+
+    /** The key was first used with a different request. */
+    public static class KeyReusedException extends RuntimeException {
+        public KeyReusedException(String idempotencyKey) {
+            super("Idempotency key " + idempotencyKey + " was already used for a different request");
+        }
+    }
+
+    record StoredResponse(String requestHash, String body) {
+    }
+
+    private record CachedResponse(StoredResponse response, long expiresAt) {
+    }
+
+    private final PayPalDataService dataService;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper canonicalMapper;
+    private final Duration ttl;
+    private final int maxEntries;
+
+    private final Map<String, Mono<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, CachedResponse> recent;
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+
+    public PayPalIdempotencyStore(
+            PayPalDataService dataService,
+            ObjectMapper objectMapper,
+            @Value("${paypal.idempotency.ttl:24h}") Duration ttl,
+            @Value("${paypal.idempotency.max-entries:10000}") int maxEntries,
+            MeterRegistry meterRegistry
+    ) {
+        this.dataService = dataService;
+        this.objectMapper = objectMapper;
+        this.canonicalMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.recent = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > PayPalIdempotencyStore.this.maxEntries;
+            }
+        };
+        this.memoryHits = Counter.builder("paypal.idempotency.lookups").tag("result", "memory").register(meterRegistry);
+        this.databaseHits = Counter.builder("paypal.idempotency.lookups").tag("result", "database").register(meterRegistry);
+        this.misses = Counter.builder("paypal.idempotency.lookups").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * Returns the stored response for {@code idempotencyKey}, or runs {@code action} and stores
+     * its response. Fails with {@link KeyReusedException} when the key was stored for a request
+     * with a different {@code requestHash}.
+     */
+    public <T> Mono<T> execute(String idempotencyKey, String operation, String requestHash,
+                               TypeReference<T> responseType, Supplier<Mono<T>> action) {
+        return Mono.defer(() -> {
+            StoredResponse cached = fromMemory(idempotencyKey);
+            Mono<StoredResponse> response;
+            if (cached != null) {
+                memoryHits.increment();
+                response = Mono.just(cached);
+            } else {
+                response = inFlight.computeIfAbsent(idempotencyKey, key -> {
+                    Mono<StoredResponse> load = load(key, operation, requestHash, action).cache();
+                    return load.doFinally(signal -> inFlight.remove(key));
+                });
+            }
+            return response.map(stored -> {
+                if (!stored.requestHash().equals(requestHash)) {
+                    throw new KeyReusedException(idempotencyKey);
+                }
+                return read(stored.body(), responseType);
+            });
+        });
+    }
+
+    /** Stable hash of a request body; map keys are ordered so equal payloads hash equally. */
+    public String requestHash(Object request) {
+        try {
+            return sha256(canonicalMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request cannot be serialized", e);
+        }
+    }
+
+    public static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${paypal.idempotency.cleanup-interval:1h}")
+    public void purgeExpired() {
+        Integer deleted = dataService.deleteExpiredIdempotencyRecords().block();
+        if (deleted != null && deleted > 0) {
+            log.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    private <T> Mono<StoredResponse> load(String idempotencyKey, String operation, String requestHash, Supplier<Mono<T>> action) {
+        return dataService.findIdempotencyRecord(idempotencyKey)
+                .map(record -> {
+                    databaseHits.increment();
+                    return new StoredResponse(record.getRequestHash(), record.getResponseBody());
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    misses.increment();
+                    return action.get()
+                            .map(result -> new StoredResponse(requestHash, write(result)))
+                            .flatMap(stored -> dataService.saveIdempotencyRecord(idempotencyKey, operation, requestHash, stored.body(), ttl)
+                                    .onErrorResume(e -> {
+                                        // The call itself succeeded; only replay after a restart is lost
+                                        log.warn("Could not store response for idempotency key {}", idempotencyKey, e);
+                                        return Mono.empty();
+                                    })
+                                    .thenReturn(stored));
+                }))
+                .doOnNext(stored -> remember(idempotencyKey, stored));
+    }
+
+    private StoredResponse fromMemory(String idempotencyKey) {
+        synchronized (recent) {
+            CachedResponse cached = recent.get(idempotencyKey);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expiresAt() - System.nanoTime() <= 0) {
+                recent.remove(idempotencyKey);
+                return null;
+            }
+            return cached.response();
+        }
+    }
+
+    private void remember(String idempotencyKey, StoredResponse response) {
+        synchronized (recent) {
+            recent.put(idempotencyKey, new CachedResponse(response, System.nanoTime() + ttl.toNanos()));
+        }
+    }
+
+    private String write(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response cannot be serialized", e);
+        }
+    }
+
+    private <T> T read(String body, TypeReference<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response cannot be read", e);
+        }
+    }
+}
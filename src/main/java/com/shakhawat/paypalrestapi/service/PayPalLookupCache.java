@@ -0,0 +1,89 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.dto.PayPalOrderDetailsDto;
+import com.shakhawat.paypalrestapi.dto.PayPalRefundDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The lookup caches shared by the read side ({@link PayPalQueryService}) and the writers that
+ * keep them current ({@link PayPalDataService}). Entries are keyed by PayPal id.
+ * <p>
+ * Writers only reach the caches of their own instance. Order details and refunds change with
+ * captures, refunds and webhooks that are often handled on another instance, so they are kept
+ * for the short {@code detailsTtl}. A stored capture only changes by gaining its order id, so
+ * capture lookups are kept for {@code ttl} once they have one.
+ */
+@Getter
+@Component
+public class PayPalLookupCache {
+
+    /** A stored capture and the order it belongs to, when known. */
+    public record StoredCapture(String orderId) {
+    }
+
+    /** Order details with captures and refunds; empty for an unknown order. */
+    private final ReadThroughCache<Optional<PayPalOrderDetailsDto>> orders;
+
+    /** Captures by capture id; empty for an unknown capture. */
+    private final ReadThroughCache<Optional<StoredCapture>> captures;
+
+    /** Refunds by capture id. */
+    private final ReadThroughCache<List<PayPalRefundDto>> refunds;
+
+    public PayPalLookupCache(
+            DatabaseScheduler databaseScheduler,
+            MeterRegistry meterRegistry,
+            @Value("${paypal.cache.max-size:10000}") long maxSize,
+            @Value("${paypal.cache.ttl:10m}") Duration ttl,
+            @Value("${paypal.cache.details-ttl:5s}") Duration detailsTtl,
+            @Value("${paypal.cache.negative-ttl:30s}") Duration negativeTtl
+    ) {
+        Duration detailsNegativeTtl = negativeTtl.compareTo(detailsTtl) < 0 ? negativeTtl : detailsTtl;
+        this.orders = new ReadThroughCache<>("paypal.orders", maxSize, detailsTtl, detailsNegativeTtl, Optional::isEmpty, databaseScheduler, meterRegistry);
+        // A capture stored without its order may get it from a write on another instance
+        this.captures = new ReadThroughCache<>("paypal.captures", maxSize, ttl, negativeTtl,
+                capture -> capture.isEmpty() || capture.get().orderId() == null, databaseScheduler, meterRegistry);
+        this.refunds = new ReadThroughCache<>("paypal.refunds", maxSize, detailsTtl, detailsNegativeTtl, List::isEmpty, databaseScheduler, meterRegistry);
+    }
+
+    /** Forgets an order's details after its order, capture or refund rows changed. */
+    public void orderChanged(String orderId) {
+        if (orderId != null) {
+            orders.invalidate(orderId);
+        }
+    }
+
+    /** Records a stored capture, which also changes its order's details. */
+    public void captureStored(String captureId, String orderId) {
+        if (orderId == null) {
+            // The stored row may still name an order from an earlier write
+            captures.invalidate(captureId);
+            return;
+        }
+        captures.put(captureId, Optional.of(new StoredCapture(orderId)));
+        orderChanged(orderId);
+    }
+
+    /** Forgets a capture's refunds and the details of its order. */
+    public void refundStored(String captureId) {
+        if (captureId == null) {
+            return;
+        }
+        refunds.invalidate(captureId);
+        Optional<StoredCapture> capture = captures.getIfPresent(captureId);
+        if (capture != null && capture.isPresent() && capture.get().orderId() != null) {
+            orderChanged(capture.get().orderId());
+        } else {
+            // The order is not known here, so drop whichever cached order holds the capture
+            orders.invalidateIf(order -> order.isPresent() && order.get().getCaptures() != null
+                    && order.get().getCaptures().stream().anyMatch(c -> captureId.equals(c.getCaptureId())));
+        }
+    }
+}
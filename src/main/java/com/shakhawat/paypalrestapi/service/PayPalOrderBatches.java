@@ -0,0 +1,124 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Creates or captures several orders in one request, e.g. one order per seller of a
+ * marketplace checkout. Items are sent to PayPal in parallel, at most {@code concurrency}
+ * at a time, all with the one cached access token, and an item that fails is reported
+ * without failing the others. Rows are stored once every PayPal call has returned, all
+ * submitted at once, so the write-behind batches of {@link PayPalDataService} store them
+ * in one batched write per table rather than one per order.
+ * <p>
+ * Retrying a batch is safe: created orders reuse their PayPal-Request-Id when the client
+ * sends an idempotency key, and captures go through {@link PayPalCaptureCoordinator}.
+ */
+@Slf4j
+@Service
+public class PayPalOrderBatches {
+
+    /** The outcome of one item: a value, or the error it failed with. */
+    public record Item<T>(int index, T value, Throwable error) {
+
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    private final PayPalService payPalService;
+    private final PayPalCaptureCoordinator captureCoordinator;
+    private final PayPalDataService dataService;
+    private final PayPalOrderProjection orderProjection;
+    private final int maxItems;
+    private final int concurrency;
+
+    public PayPalOrderBatches(
+            PayPalService payPalService,
+            PayPalCaptureCoordinator captureCoordinator,
+            PayPalDataService dataService,
+            PayPalOrderProjection orderProjection,
+            @Value("${paypal.batch.max-items:50}") int maxItems,
+            @Value("${paypal.batch.concurrency:8}") int concurrency
+    ) {
+        this.payPalService = payPalService;
+        this.captureCoordinator = captureCoordinator;
+        this.dataService = dataService;
+        this.orderProjection = orderProjection;
+        this.maxItems = maxItems;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Creates an order per payload. With an idempotency key, item {@code i} is sent with a
+     * PayPal-Request-Id derived from the key and {@code i}, so a retried batch returns the
+     * same orders.
+     */
+    public Mono<List<Item<OrderResponse>>> createOrders(String idempotencyKey, List<Map<String, Object>> payloads) {
+        return checkSize(payloads).then(Mono.defer(() -> fanOut(payloads.size(),
+                index -> {
+                    String requestId = "create-order-" + (idempotencyKey != null
+                            ? PayPalIdempotencyStore.sha256(idempotencyKey + "#" + index)
+                            : UUID.randomUUID().toString());
+                    return payPalService.withAccessToken(token -> payPalService.createOrder(token, requestId, payloads.get(index)));
+                },
+                (index, order) -> orderProjection.apply(OrderEvent.created(order.id())).thenReturn(order))));
+    }
+
+    /** Captures each order, as {@code /capture-order} does one. */
+    public Mono<List<Item<CaptureResource>>> captureOrders(List<String> orderIds) {
+        return checkSize(orderIds).then(Mono.defer(() -> fanOut(orderIds.size(),
+                index -> captureCoordinator.capture(orderIds.get(index)),
+                (index, response) -> dataService.saveCapturedOrder(orderIds.get(index), response)
+                        .flatMap(capture -> orderProjection.apply(OrderEvent.captured(orderIds.get(index), capture))
+                                .thenReturn(capture)))));
+    }
+
+    private Mono<Void> checkSize(List<?> items) {
+        if (items == null || items.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("A batch needs at least one item"));
+        }
+        if (items.size() > maxItems) {
+            return Mono.error(new IllegalArgumentException("A batch holds at most " + maxItems + " items, got " + items.size()));
+        }
+        return Mono.empty();
+    }
+
+    /**
+     * Calls PayPal for every item with bounded concurrency, then stores the successful ones
+     * together. An item whose call or store fails is returned with its error.
+     */
+    private <R, T> Mono<List<Item<T>>> fanOut(int size, Function<Integer, Mono<R>> call, BiFunction<Integer, R, Mono<T>> store) {
+        return Flux.range(0, size)
+                .flatMap(index -> call.apply(index)
+                        .map(response -> new Item<>(index, response, null))
+                        .onErrorResume(e -> Mono.just(new Item<>(index, null, e))), concurrency)
+                .collectList()
+                // Submitted all at once, so the writes end up in the same batches
+                .flatMapMany(called -> Flux.fromIterable(called)
+                        .flatMap(item -> item.succeeded()
+                                ? store.apply(item.index(), item.value())
+                                        .map(stored -> new Item<>(item.index(), stored, null))
+                                        .onErrorResume(e -> Mono.just(new Item<>(item.index(), null, e)))
+                                : Mono.just(new Item<T>(item.index(), null, item.error())), called.size()))
+                .doOnNext(item -> {
+                    if (!item.succeeded()) {
+                        log.warn("Batch item {} failed", item.index(), item.error());
+                    }
+                })
+                .sort(Comparator.comparingInt(Item::index))
+                .collectList();
+    }
+}
@@ -0,0 +1,351 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shakhawat.paypalrestapi.dto.PayPalOrderStatusDto;
+import com.shakhawat.paypalrestapi.entity.PayPalOrderStatus;
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.CurrencyUnit;
+import com.shakhawat.paypalrestapi.model.Money;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import com.shakhawat.paypalrestapi.model.RefundResource;
+import com.shakhawat.paypalrestapi.model.WebhookEnvelope;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory lifecycle of recently changed orders, so their status is read without a database
+ * round-trip. API responses and webhook events are applied as {@link OrderEvent}s in whatever
+ * order they arrive (see {@link OrderLifecycle}); when the status moves forward it is written
+ * through to {@code paypal_order}. An order not held here is loaded from its order, capture
+ * and refund rows before an event is applied or its status is read.
+ * <p>
+ * Another instance may apply events for the same order, so entries expire {@code ttl} after
+ * their last change here and are then read again from the rows; at most {@code maxSize}
+ * orders are held.
+ * <p>
+ * On startup the processed webhook events of the {@code rebuildWindow} are replayed on top of
+ * the stored rows, one batch of orders at a time, and rows left behind the events are brought
+ * forward.
+ */
+@Slf4j
+@Service
+public class PayPalOrderProjection {
+
+    private static final List<String> EVENT_TYPES = List.of(
+            "CHECKOUT.ORDER.APPROVED", "PAYMENT.CAPTURE.COMPLETED", "PAYMENT.CAPTURE.REFUNDED");
+
+    // Sorted by order, so each order's events are read together. Captures and refunds without the order in their
+    // payload are keyed by their resource id; the order is then found through the stored capture
+    private static final String WEBHOOK_EVENTS = """
+            SELECT e.event_type, e.event_data, e.received_at, coalesce(c.order_id, rc.order_id) AS stored_order_id
+            FROM paypal_webhook_event e
+            LEFT JOIN pay_pal_capture c ON c.capture_id = e.resource_id
+            LEFT JOIN paypal_refunds r ON r.refund_id = e.resource_id
+            LEFT JOIN pay_pal_capture rc ON rc.capture_id = r.capture_id
+            WHERE e.status = 'PROCESSED' AND e.event_type = ANY(?) AND e.received_at >= ?
+            ORDER BY coalesce(c.order_id, rc.order_id, e.resource_id), e.received_at
+            """;
+    private static final String ORDERS = """
+            SELECT order_id, status, updated_at FROM paypal_order WHERE order_id = ANY(?)
+            """;
+    private static final String CAPTURES = """
+            SELECT order_id, capture_id, amount_minor, currency
+            FROM pay_pal_capture
+            WHERE order_id = ANY(?) AND status = 'COMPLETED'
+            """;
+    private static final String REFUNDS = """
+            SELECT c.order_id, r.refund_id, r.capture_id, r.amount_minor, r.currency
+            FROM paypal_refunds r JOIN pay_pal_capture c ON c.capture_id = r.capture_id
+            WHERE c.order_id = ANY(?) AND (r.status IS NULL OR r.status NOT IN ('FAILED', 'CANCELLED'))
+            """;
+
+    // Orders looked up per statement, and held at once, while rebuilding
+    private static final int LOOKUP_BATCH = 1000;
+
+    private final PayPalDataService dataService;
+    private final DatabaseScheduler databaseScheduler;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration rebuildWindow;
+
+    private final Cache<String, OrderLifecycle> orders;
+    private final Cache<String, String> captureOrders;
+
+    public PayPalOrderProjection(
+            PayPalDataService dataService,
+            DatabaseScheduler databaseScheduler,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${paypal.orders.projection.max-size:100000}") long maxSize,
+            @Value("${paypal.orders.projection.ttl:30s}") Duration ttl,
+            @Value("${paypal.orders.projection.rebuild-window:30d}") Duration rebuildWindow,
+            @Value("${paypal.orders.projection.fetch-size:1000}") int fetchSize
+    ) {
+        this.dataService = dataService;
+        this.databaseScheduler = databaseScheduler;
+        // A copy, so the fetch size does not leak to other users of the shared template
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.rebuildWindow = rebuildWindow;
+        this.orders = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+        // A capture never moves to another order, so these do not expire
+        this.captureOrders = Caffeine.newBuilder().maximumSize(maxSize).build();
+        Gauge.builder("paypal.orders.projection.size", orders, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    /**
+     * Applies an event and completes with the resulting status. Fails, so a webhook is
+     * retried later, when a refund's order cannot be found yet because its capture is not
+     * known. A null event is ignored.
+     */
+    public Mono<PayPalOrderStatus> apply(OrderEvent event) {
+        if (event == null) {
+            return Mono.empty();
+        }
+        return resolveOrderId(event).flatMap(orderId -> load(orderId, event.type())
+                .then(Mono.defer(() -> {
+                    PayPalOrderStatus[] before = new PayPalOrderStatus[1];
+                    OrderLifecycle after = orders.asMap().compute(orderId, (id, current) -> {
+                        before[0] = current != null ? current.status() : null;
+                        return (current != null ? current : OrderLifecycle.EMPTY).apply(event.withOrderId(orderId));
+                    });
+                    index(orderId, after);
+                    PayPalOrderStatus status = after.status();
+                    if (status == null || status == before[0]) {
+                        return Mono.justOrEmpty(status);
+                    }
+                    log.info("Order [{}] {} -> {} on {}", orderId, before[0], status, event.type());
+                    return dataService.saveOrderStatus(orderId, status).thenReturn(status);
+                })));
+    }
+
+    /** The status of an order, from the projection when held there; empty when the order is unknown. */
+    public Mono<PayPalOrderStatusDto> status(String orderId) {
+        OrderLifecycle lifecycle = orders.getIfPresent(orderId);
+        if (lifecycle != null) {
+            return Mono.justOrEmpty(toDto(orderId, lifecycle));
+        }
+        return databaseScheduler.call(() -> lookup(List.of(orderId), null).get(orderId))
+                .mapNotNull(stored -> toDto(orderId, stored));
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        long started = System.nanoTime();
+        Instant since = Instant.now().minus(rebuildWindow);
+        RebuildBatch batch = new RebuildBatch();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            // PostgreSQL only honours the fetch size inside a transaction
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(WEBHOOK_EVENTS);
+                statement.setArray(1, connection.createArrayOf("text", EVENT_TYPES.toArray()));
+                statement.setTimestamp(2, Timestamp.from(since));
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                batch.events++;
+                OrderEvent event = decode(rs.getString("event_type"), rs.getString("event_data"));
+                if (event == null) {
+                    return;
+                }
+                // Refund events name only their capture
+                String orderId = event.orderId() != null ? event.orderId() : rs.getString("stored_order_id");
+                if (orderId == null) {
+                    batch.orphans++;
+                    return;
+                }
+                if (!batch.byOrder.containsKey(orderId) && batch.byOrder.size() == LOOKUP_BATCH) {
+                    repair(batch);
+                }
+                batch.byOrder.computeIfAbsent(orderId, id -> new ArrayList<>())
+                        .add(event.withOrderId(orderId).at(rs.getTimestamp("received_at").toInstant()));
+            });
+            repair(batch);
+        });
+
+        log.info("Order projection rebuilt from {} webhook events since {} in {} ms: {} orders, {} statuses repaired, {} events without a known order",
+                batch.events, since, Duration.ofNanos(System.nanoTime() - started).toMillis(), batch.orders, batch.repairs, batch.orphans);
+    }
+
+    /** The events of up to {@link #LOOKUP_BATCH} orders read by {@link #rebuild}, and its counts so far. */
+    private static class RebuildBatch {
+        final Map<String, List<OrderEvent>> byOrder = new LinkedHashMap<>();
+        long events;
+        long orders;
+        long repairs;
+        long orphans;
+    }
+
+    /** Replays the batch's events on top of the stored rows, brings rows left behind forward and clears the batch. */
+    private void repair(RebuildBatch batch) {
+        Map<String, PayPalOrderStatus> storedStatuses = new HashMap<>();
+        Map<String, OrderLifecycle> stored = lookup(batch.byOrder.keySet(), storedStatuses);
+        Map<String, PayPalOrderStatus> repairs = new HashMap<>();
+        batch.byOrder.forEach((orderId, events) -> {
+            OrderLifecycle lifecycle = stored.getOrDefault(orderId, OrderLifecycle.EMPTY);
+            for (OrderEvent event : events) {
+                lifecycle = lifecycle.apply(event);
+            }
+            index(orderId, lifecycle);
+            if (lifecycle.status() != null && lifecycle.status().isAfter(storedStatuses.get(orderId))) {
+                repairs.put(orderId, lifecycle.status());
+            }
+        });
+        // Up to LOOKUP_BATCH at a time, so they are written in batches without overfilling the write queue
+        Flux.fromIterable(repairs.entrySet())
+                .flatMap(repair -> dataService.saveOrderStatus(repair.getKey(), repair.getValue()), LOOKUP_BATCH)
+                .blockLast();
+        batch.orders += batch.byOrder.size();
+        batch.repairs += repairs.size();
+        batch.byOrder.clear();
+    }
+
+    private Mono<String> resolveOrderId(OrderEvent event) {
+        if (event.orderId() != null) {
+            return Mono.just(event.orderId());
+        }
+        String captureId = event.captureId();
+        if (captureId == null) {
+            return Mono.error(new IllegalStateException(event.type() + " event without an order or capture id"));
+        }
+        String orderId = captureOrders.getIfPresent(captureId);
+        if (orderId != null) {
+            return Mono.just(orderId);
+        }
+        return dataService.findOrderIdByCapture(captureId)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Order of capture " + captureId + " is not known yet")));
+    }
+
+    /**
+     * Brings an order not held here into the projection, except when it is only being created.
+     * An order row behind its own captures and refunds is brought forward.
+     */
+    private Mono<Void> load(String orderId, OrderEvent.Type type) {
+        if (type == OrderEvent.Type.CREATED || orders.getIfPresent(orderId) != null) {
+            return Mono.empty();
+        }
+        Map<String, PayPalOrderStatus> storedStatuses = new ConcurrentHashMap<>();
+        return databaseScheduler.call(() -> lookup(List.of(orderId), storedStatuses).get(orderId))
+                .flatMap(stored -> {
+                    index(orderId, orders.asMap().merge(orderId, stored, (current, loaded) -> current.merge(loaded)));
+                    PayPalOrderStatus status = stored.status();
+                    return status != null && status.isAfter(storedStatuses.get(orderId))
+                            ? dataService.saveOrderStatus(orderId, status)
+                            : Mono.empty();
+                });
+    }
+
+    private void index(String orderId, OrderLifecycle lifecycle) {
+        for (String captureId : lifecycle.captures().keySet()) {
+            captureOrders.asMap().putIfAbsent(captureId, orderId);
+        }
+    }
+
+    /**
+     * The stored lifecycle of each order that has an order row or a capture. The status of
+     * each order row is added to {@code rowStatuses} when given.
+     */
+    private Map<String, OrderLifecycle> lookup(Collection<String> orderIds, Map<String, PayPalOrderStatus> rowStatuses) {
+        Map<String, OrderLifecycle> found = new HashMap<>();
+        query(ORDERS, orderIds, rs -> {
+            Timestamp updatedAt = rs.getTimestamp("updated_at");
+            PayPalOrderStatus status = PayPalOrderStatus.parse(rs.getString("status"));
+            found.put(rs.getString("order_id"), OrderLifecycle.stored(status, updatedAt != null ? updatedAt.toInstant() : null));
+            if (rowStatuses != null && status != null) {
+                rowStatuses.put(rs.getString("order_id"), status);
+            }
+        });
+        query(CAPTURES, orderIds, rs -> {
+            String orderId = rs.getString("order_id");
+            OrderEvent captured = new OrderEvent(OrderEvent.Type.CAPTURED, orderId, rs.getString("capture_id"), null, money(rs), null);
+            found.put(orderId, found.getOrDefault(orderId, OrderLifecycle.EMPTY).apply(captured));
+        });
+        query(REFUNDS, orderIds, rs -> {
+            String orderId = rs.getString("order_id");
+            OrderEvent refunded = new OrderEvent(OrderEvent.Type.REFUNDED, orderId, rs.getString("capture_id"),
+                    rs.getString("refund_id"), money(rs), null);
+            found.put(orderId, found.getOrDefault(orderId, OrderLifecycle.EMPTY).apply(refunded));
+        });
+        return found;
+    }
+
+    private void query(String sql, Collection<String> ids, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("text", ids.toArray()));
+            return statement;
+        }, handler);
+    }
+
+    private OrderEvent decode(String eventType, String eventData) {
+        try {
+            WebhookEnvelope envelope = objectMapper.readValue(eventData, WebhookEnvelope.class);
+            return switch (eventType) {
+                case "CHECKOUT.ORDER.APPROVED" -> {
+                    OrderResponse order = envelope.resourceAs(objectMapper, OrderResponse.class);
+                    yield order != null && order.id() != null ? OrderEvent.approved(order.id()) : null;
+                }
+                case "PAYMENT.CAPTURE.COMPLETED" -> OrderEvent.captured(null, envelope.resourceAs(objectMapper, CaptureResource.class));
+                case "PAYMENT.CAPTURE.REFUNDED" -> OrderEvent.refunded(envelope.resourceAs(objectMapper, RefundResource.class), null);
+                default -> null;
+            };
+        } catch (IOException e) {
+            log.warn("Skipping unreadable {} event while rebuilding the order projection", eventType, e);
+            return null;
+        }
+    }
+
+    private static Money money(ResultSet rs) throws SQLException {
+        long minorUnits = rs.getLong("amount_minor");
+        if (rs.wasNull()) {
+            return null;
+        }
+        String currency = rs.getString("currency");
+        return currency != null ? new Money(minorUnits, CurrencyUnit.of(currency)) : null;
+    }
+
+    private static PayPalOrderStatusDto toDto(String orderId, OrderLifecycle lifecycle) {
+        if (lifecycle.status() == null) {
+            return null;
+        }
+        return PayPalOrderStatusDto.builder()
+                .orderId(orderId)
+                .status(lifecycle.status())
+                .capturedAmount(lifecycle.captured())
+                .refundedAmount(lifecycle.refunds().isEmpty() ? null : lifecycle.refunded())
+                .updatedAt(lifecycle.updatedAt())
+                .build();
+    }
+}
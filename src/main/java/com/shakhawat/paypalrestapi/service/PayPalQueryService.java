@@ -0,0 +1,105 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.dto.KeysetPageDto;
+import com.shakhawat.paypalrestapi.dto.PayPalOrderDetailsDto;
+import com.shakhawat.paypalrestapi.dto.PayPalRefundDto;
+import com.shakhawat.paypalrestapi.dto.PayPalWebhookEventSummaryDto;
+import com.shakhawat.paypalrestapi.repository.PayPalCaptureRepository;
+import com.shakhawat.paypalrestapi.repository.PayPalOrderRepository;
+import com.shakhawat.paypalrestapi.repository.PayPalRefundRepository;
+import com.shakhawat.paypalrestapi.repository.PayPalWebhookEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Read side of the payment tables. Every query reads projections straight into DTOs through
+ * an index, and listings page by keyset so a deep page costs the same as the first. Order and
+ * refund lookups are served from {@link PayPalLookupCache}, which local writers keep current
+ * and which expires them quickly for writes on other instances.
+ */
+@Service
+@RequiredArgsConstructor
+public class PayPalQueryService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final PayPalOrderRepository orderRepository;
+    private final PayPalCaptureRepository captureRepository;
+    private final PayPalRefundRepository refundRepository;
+    private final PayPalWebhookEventRepository webhookEventRepository;
+    private final DatabaseScheduler databaseScheduler;
+    private final PayPalLookupCache lookupCache;
+
+    /** The order with its captures and their refunds, or empty when the order is unknown. */
+    public Mono<PayPalOrderDetailsDto> findOrder(String orderId) {
+        return lookupCache.getOrders().get(orderId, () -> orderRepository.findDtoById(orderId)
+                        .map(order -> PayPalOrderDetailsDto.builder()
+                                .order(order)
+                                .captures(captureRepository.findDtosByOrderId(orderId))
+                                .refunds(refundRepository.findDtosByOrderId(orderId))
+                                .build()))
+                .mapNotNull(order -> order.orElse(null));
+    }
+
+    public Mono<List<PayPalRefundDto>> findRefundsByCapture(String captureId) {
+        return lookupCache.getRefunds().get(captureId, () -> refundRepository.findDtosByCaptureId(captureId));
+    }
+
+    /**
+     * Events received in {@code [from, to)}, optionally of one type, oldest first. Fails with
+     * {@link IllegalArgumentException} for a malformed cursor or page size.
+     */
+    public Mono<KeysetPageDto<PayPalWebhookEventSummaryDto>> findWebhookEvents(
+            String eventType, Instant from, Instant to, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.error(new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        EventCursor cursor;
+        try {
+            cursor = after != null ? EventCursor.decode(after) : new EventCursor(from, Long.MIN_VALUE);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+
+        return databaseScheduler.call(() -> {
+            // One extra row tells whether there is a next page
+            Limit fetch = Limit.of(limit + 1);
+            List<PayPalWebhookEventSummaryDto> events = eventType != null
+                    ? webhookEventRepository.findSummariesByType(eventType, from, to, cursor.receivedAt(), cursor.id(), fetch)
+                    : webhookEventRepository.findSummaries(from, to, cursor.receivedAt(), cursor.id(), fetch);
+            if (events.size() <= limit) {
+                return new KeysetPageDto<>(events, null);
+            }
+            List<PayPalWebhookEventSummaryDto> page = events.subList(0, limit);
+            PayPalWebhookEventSummaryDto last = page.getLast();
+            return new KeysetPageDto<>(List.copyOf(page), new EventCursor(last.getReceivedAt(), last.getId()).encode());
+        });
+    }
+
+    /** Position after an event in (receivedAt, id) order, opaque to clients. */
+    private record EventCursor(Instant receivedAt, long id) {
+
+        String encode() {
+            String value = receivedAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static EventCursor decode(String cursor) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = value.lastIndexOf('|');
+                return new EventCursor(Instant.parse(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Malformed cursor", e);
+            }
+        }
+    }
+}
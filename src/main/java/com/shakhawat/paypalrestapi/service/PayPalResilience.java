@@ -0,0 +1,176 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Per-operation resilience policies for PayPal calls: a concurrency bulkhead, a circuit
+ * breaker that fails fast while PayPal is unhealthy and retries with jittered exponential
+ * backoff. Every operation is safe to repeat: reads by nature, and create, capture and refund
+ * because they carry a PayPal-Request-Id. Only transient failures (I/O errors, timeouts, 5xx,
+ * 408 and 429) are retried or counted against the breaker; other 4xx responses are the
+ * caller's problem and pass straight through.
+ *
+ * <p>Every operation reads {@code paypal.resilience.<operation>.<setting>}, falling back to
+ * {@code paypal.resilience.default.<setting>}. State and call metrics are published to
+ * Micrometer as {@code resilience4j.circuitbreaker.*}, {@code resilience4j.retry.*} and
+ * {@code resilience4j.bulkhead.*} tagged with {@code name=paypal-<operation>}.
+ */
+@Slf4j
+@Component
+public class PayPalResilience {
+
+    public enum Operation {
+        TOKEN("token"),
+        CREATE_ORDER("create-order"),
+        CAPTURE_ORDER("capture-order"),
+        REFUND("refund"),
+        VERIFY("verify");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+    }
+
+    /** Settings of one operation's policy. */
+    public record Policy(
+            boolean retryEnabled,
+            int maxAttempts,
+            Duration initialBackoff,
+            Duration maxBackoff,
+            double jitter,
+            float failureRateThreshold,
+            int slidingWindowSize,
+            int minimumNumberOfCalls,
+            Duration openStateWait,
+            int maxConcurrentCalls
+    ) {
+    }
+
+    private final Map<Operation, Function<Mono<?>, Mono<?>>> policies = new EnumMap<>(Operation.class);
+    private final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+
+    @Autowired
+    public PayPalResilience(Environment environment, MeterRegistry meterRegistry) {
+        this(operation -> policyFrom(environment, operation), meterRegistry);
+    }
+
+    PayPalResilience(Function<Operation, Policy> policyLookup, MeterRegistry meterRegistry) {
+        RetryRegistry retryRegistry = RetryRegistry.ofDefaults();
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedRetryMetrics.ofRetryRegistry(retryRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+
+        for (Operation operation : Operation.values()) {
+            Policy policy = policyLookup.apply(operation);
+            String name = "paypal-" + operation.key();
+
+            Bulkhead bulkhead = bulkheadRegistry.bulkhead(name, BulkheadConfig.custom()
+                    .maxConcurrentCalls(policy.maxConcurrentCalls())
+                    .maxWaitDuration(Duration.ZERO)
+                    .build());
+
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(name, CircuitBreakerConfig.custom()
+                    .failureRateThreshold(policy.failureRateThreshold())
+                    .slidingWindowSize(policy.slidingWindowSize())
+                    .minimumNumberOfCalls(policy.minimumNumberOfCalls())
+                    .waitDurationInOpenState(policy.openStateWait())
+                    .recordException(PayPalResilience::isTransient)
+                    .build());
+            circuitBreaker.getEventPublisher().onStateTransition(event ->
+                    log.warn("PayPal circuit breaker {} {}", name, event.getStateTransition()));
+
+            boolean retry = policy.retryEnabled() && policy.maxAttempts() > 1;
+            Retry retrier = retryRegistry.retry(name, RetryConfig.custom()
+                    .maxAttempts(retry ? policy.maxAttempts() : 1)
+                    .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(
+                            policy.initialBackoff(), 2.0, policy.jitter(), policy.maxBackoff()))
+                    .retryOnException(PayPalResilience::isTransient)
+                    .build());
+
+            // Each attempt passes the breaker and the bulkhead on its own
+            policies.put(operation, call -> call
+                    .transformDeferred(BulkheadOperator.of(bulkhead))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    .transformDeferred(RetryOperator.of(retrier)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> decorate(Operation operation, Mono<T> call) {
+        return (Mono<T>) policies.get(operation).apply(call);
+    }
+
+    public CircuitBreaker.State state(Operation operation) {
+        return circuitBreakerRegistry.circuitBreaker("paypal-" + operation.key()).getState();
+    }
+
+    static boolean isTransient(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError()
+                    || response.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT)
+                    || response.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+
+    private static Policy policyFrom(Environment environment, Operation operation) {
+        PolicyProperties properties = new PolicyProperties(environment, operation);
+        return new Policy(
+                properties.get("retry-enabled", Boolean.class, true),
+                properties.get("max-attempts", Integer.class, 3),
+                properties.get("initial-backoff", Duration.class, Duration.ofMillis(200)),
+                properties.get("max-backoff", Duration.class, Duration.ofSeconds(2)),
+                properties.get("jitter", Double.class, 0.5),
+                properties.get("failure-rate-threshold", Float.class, 50f),
+                properties.get("sliding-window-size", Integer.class, 20),
+                properties.get("minimum-number-of-calls", Integer.class, 10),
+                properties.get("open-state-wait", Duration.class, Duration.ofSeconds(30)),
+                properties.get("max-concurrent-calls", Integer.class, 25)
+        );
+    }
+
+    private record PolicyProperties(Environment environment, Operation operation) {
+
+        <T> T get(String setting, Class<T> type, T defaultValue) {
+            T fallback = environment.getProperty("paypal.resilience.default." + setting, type, defaultValue);
+            return environment.getProperty("paypal.resilience." + operation.key() + "." + setting, type, fallback);
+        }
+    }
+}
@@ -1,227 +1,239 @@
 package com.shakhawat.paypalrestapi.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.shakhawat.paypalrestapi.entity.PayPalCapture;
-import com.shakhawat.paypalrestapi.repository.PayPalCaptureRepository;
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.Money;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import com.shakhawat.paypalrestapi.model.RefundResource;
+import com.shakhawat.paypalrestapi.model.TokenResponse;
+import com.shakhawat.paypalrestapi.model.VerifyWebhookSignatureRequest;
+import com.shakhawat.paypalrestapi.model.VerifyWebhookSignatureResponse;
+import com.shakhawat.paypalrestapi.service.PayPalResilience.Operation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.annotation.Nullable;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ClientHttpRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PayPalService {
 
+    // PayPal returns the original result for a repeated request id instead of acting twice
+    public static final String PAYPAL_REQUEST_ID = "PayPal-Request-Id";
+
     @Value("${paypal.client.id}")
     private String clientId;
 
     @Value("${paypal.client.secret}")
     private String clientSecret;
 
-    @Value("${paypal.mode:sandbox}")
-    private String mode;
-
     @Getter
     @Value("${paypal.webhook.id}")
     private String webhookId;
 
-    private WebClient webClient;
+    @Value("${paypal.token.refresh-before-expiry:5m}")
+    private Duration tokenRefreshBeforeExpiry;
+
+    // Per-operation response timeouts, overriding paypal.http.response-timeout
+    @Value("${paypal.http.timeout.token:10s}")
+    private Duration tokenTimeout;
+
+    @Value("${paypal.http.timeout.orders:30s}")
+    private Duration ordersTimeout;
+
+    @Value("${paypal.http.timeout.refunds:30s}")
+    private Duration refundsTimeout;
+
+    @Value("${paypal.http.timeout.verify:10s}")
+    private Duration verifyTimeout;
 
+    private PayPalTokenCache tokenCache;
+
+    private final WebClient webClient;
+    private final PayPalResilience resilience;
     private final PayPalDataService  payPalDataService;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
 
     @PostConstruct
     public void init() {
-        String baseUrl = "live".equalsIgnoreCase(mode)
-                ? "https://api-m.paypal.com"
-                : "https://api-m.sandbox.paypal.com";
-
-        this.webClient = WebClient.builder()
-                .baseUrl(baseUrl)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+        this.tokenCache = new PayPalTokenCache(this::requestAccessToken, tokenRefreshBeforeExpiry, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tokenCache.shutdown();
+    }
+
+    /**
+     * A PayPal call under its resilience policy, observed as a whole, retries included, as
+     * {@code paypal.requests} tagged with the operation and its outcome ({@code reactor.status},
+     * {@code error}). Each attempt is also an {@code http.client.requests} observation.
+     */
+    private <T> Mono<T> call(Operation operation, Mono<T> request) {
+        return resilience.decorate(operation, request)
+                .name("paypal.requests")
+                .tag("operation", operation.key())
+                .tap(Micrometer.observation(observationRegistry));
     }
 
     public Mono<String> getAccessToken() {
+        return tokenCache.getToken();
+    }
+
+    /**
+     * Runs a PayPal call with the cached access token. If PayPal rejects the token
+     * with 401 it is invalidated and the call is retried once with a fresh one.
+     */
+    public <T> Mono<T> withAccessToken(Function<String, Mono<T>> call) {
+        return tokenCache.getToken().flatMap(token -> call.apply(token)
+                .onErrorResume(WebClientResponseException.Unauthorized.class, e -> {
+                    log.warn("PayPal rejected the cached access token, retrying with a fresh one");
+                    tokenCache.invalidate(token);
+                    return tokenCache.getToken().flatMap(call);
+                }));
+    }
+
+    private Mono<PayPalTokenCache.AccessToken> requestAccessToken() {
         String creds = clientId + ":" + clientSecret;
         String encodedCreds = Base64.getEncoder().encodeToString(creds.getBytes());
 
-        return webClient.post()
+        return call(Operation.TOKEN, webClient.post()
                 .uri("/v1/oauth2/token")
                 .header(HttpHeaders.AUTHORIZATION, "Basic " + encodedCreds)
                 .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                 .body(BodyInserters.fromFormData("grant_type", "client_credentials"))
+                .httpRequest(responseTimeout(tokenTimeout))
                 .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> (String) response.get("access_token"))
+                .bodyToMono(TokenResponse.class))
+                .map(response -> new PayPalTokenCache.AccessToken(
+                        response.accessToken(), Instant.now().plusSeconds(response.expiresIn())))
                 .doOnError(e -> log.error("Failed to get access token from PayPal", e));
     }
 
-    public Mono<Map<String, Object>> createOrder(String accessToken, Map<String, Object> orderPayload) {
-        return webClient.post()
+    public Mono<OrderResponse> createOrder(String accessToken, String requestId, Map<String, Object> orderPayload) {
+        return call(Operation.CREATE_ORDER, webClient.post()
                 .uri("/v2/checkout/orders")
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .header(PAYPAL_REQUEST_ID, requestId)
                 .bodyValue(orderPayload)
+                .httpRequest(responseTimeout(ordersTimeout))
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(OrderResponse.class))
                 .doOnError(e -> log.error("Failed to create PayPal order", e));
     }
 
-    public Mono<Map<String, Object>> captureOrder(String accessToken, String orderId) {
-        return webClient.post()
+    public Mono<OrderResponse> captureOrder(String accessToken, String orderId) {
+        return call(Operation.CAPTURE_ORDER, webClient.post()
                 .uri("/v2/checkout/orders/{orderId}/capture", orderId)
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .header(PAYPAL_REQUEST_ID, captureRequestId(orderId))
+                .httpRequest(responseTimeout(ordersTimeout))
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(OrderResponse.class))
                 .doOnError(e -> log.error("Failed to capture PayPal order", e));
     }
 
-    public Mono<Boolean> verifyWebhookSignature(String accessToken, Map<String, Object> verifyPayload) {
-        return webClient.post()
+    public Mono<Boolean> verifyWebhookSignature(String accessToken, VerifyWebhookSignatureRequest verifyPayload) {
+        return call(Operation.VERIFY, webClient.post()
                 .uri("/v1/notifications/verify-webhook-signature")
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                 .bodyValue(verifyPayload)
+                .httpRequest(responseTimeout(verifyTimeout))
                 .retrieve()
-                .bodyToMono(Map.class)
-                .map(response -> "SUCCESS".equals(response.get("verification_status")))
+                .bodyToMono(VerifyWebhookSignatureResponse.class))
+                .map(VerifyWebhookSignatureResponse::isSuccess)
                 .doOnError(e -> log.error("Webhook verification failed", e));
     }
 
-    public Map<String, Object> buildWebhookVerifyPayload(HttpHeaders headers, Map<String, Object> webhookEvent) {
-        Map<String, Object> payload = new HashMap<>();
-
-        payload.put("auth_algo", headers.getFirst("paypal-auth-algo"));
-        payload.put("cert_url", headers.getFirst("paypal-cert-url"));
-        payload.put("transmission_id", headers.getFirst("paypal-transmission-id"));
-        payload.put("transmission_sig", headers.getFirst("paypal-transmission-sig"));
-        payload.put("transmission_time", headers.getFirst("paypal-transmission-time"));
-
-        payload.put("webhook_id", webhookId);
-
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            String eventBody = mapper.writeValueAsString(webhookEvent);
-            payload.put("webhook_event", mapper.readValue(eventBody, Map.class));
-        } catch (Exception e) {
-            log.error("Failed to build webhook verification payload", e);
-        }
-
-        return payload;
+    public VerifyWebhookSignatureRequest buildWebhookVerifyPayload(HttpHeaders headers, String webhookEvent) {
+        return new VerifyWebhookSignatureRequest(
+                headers.getFirst("paypal-auth-algo"),
+                headers.getFirst("paypal-cert-url"),
+                headers.getFirst("paypal-transmission-id"),
+                headers.getFirst("paypal-transmission-sig"),
+                headers.getFirst("paypal-transmission-time"),
+                webhookId,
+                webhookEvent
+        );
     }
 
-    public Mono<Object> refundCapture(String accessToken, String captureId, @Nullable Double amount, @Nullable String currencyCode) {
-        Map<String, Object> payload = null;
-
-        if (amount != null && currencyCode != null) {
-            payload = Map.of(
-                    "amount", Map.of(
-                            "value", String.format("%.2f", amount),
-                            "currency_code", currencyCode
-                    )
-            );
-        }
+    public Mono<RefundResource> refundCapture(String accessToken, String requestId, String captureId, @Nullable Money amount) {
+        // Money serializes as PayPal's {"currency_code", "value"} amount with the currency's exact decimals
+        Map<String, Object> payload = amount != null ? Map.of("amount", amount) : null;
 
         WebClient.RequestBodySpec request = webClient.post()
                 .uri("/v2/payments/captures/" + captureId + "/refund")
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+                .header(PAYPAL_REQUEST_ID, requestId)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .httpRequest(responseTimeout(refundsTimeout));
 
-        return (payload != null ? request.bodyValue(payload) : request)
+        return call(Operation.REFUND, (payload != null ? request.bodyValue(payload) : request)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<>() {})
+                .bodyToMono(RefundResource.class))
                 .doOnError(e -> log.error("Refund failed for captureId {}", captureId, e));
     }
 
-    public Mono<String> handleCheckoutApprovedWebhook(String orderId, String accessToken) {
-        return captureOrder(accessToken, orderId)
-                .flatMap(captureResponse -> {
-                    try {
-                        List<Map<String, Object>> purchaseUnits = (List<Map<String, Object>>) captureResponse.get("purchase_units");
-
-                        if (purchaseUnits != null && !purchaseUnits.isEmpty()) {
-                            Map<String, Object> payments = (Map<String, Object>) purchaseUnits.get(0).get("payments");
-
-                            if (payments != null) {
-                                List<Map<String, Object>> captures = (List<Map<String, Object>>) payments.get("captures");
-
-                                if (captures != null && !captures.isEmpty()) {
-                                    payPalDataService.saveCapture(captures.getFirst());
-                                    return Mono.just("Capture saved for order " + orderId);
-                                }
-                            }
-                        }
-
-                        return Mono.just("No captures found in order " + orderId);
-
-                    } catch (Exception e) {
-                        log.error("Error parsing capture in webhook capture", e);
-                        return Mono.error(new RuntimeException("Failed to save capture"));
-                    }
-                });
-    }
-
-    public Mono<String> handlePaymentCaptureCompletedWebhook(Map<String, Object> captureResource) {
-        try {
-            if (captureResource == null || captureResource.isEmpty()) {
-                return Mono.just("Empty capture resource - nothing to process");
-            }
-
-            String captureId = (String) captureResource.get("id");
-            String status = (String) captureResource.get("status");
+    public Mono<String> handlePaymentCaptureCompletedWebhook(CaptureResource capture) {
+        if (capture == null) {
+            return Mono.just("Empty capture resource - nothing to process");
+        }
 
-            if (captureId == null) {
-                return Mono.just("No capture ID found in resource");
-            }
+        String captureId = capture.id();
+        if (captureId == null) {
+            return Mono.just("No capture ID found in resource");
+        }
 
-            // Prevent saving duplicate captures (optional, if dataService handles it)
-            if (payPalDataService.captureExists(captureId)) {
+        // Prevent saving duplicate captures (optional, if dataService handles it)
+        return payPalDataService.captureExists(captureId).flatMap(exists -> {
+            if (exists) {
                 log.info("Duplicate capture webhook received for ID: {}", captureId);
                 return Mono.just("Duplicate capture ignored");
             }
 
             // Save capture to database
-            payPalDataService.saveCapture(captureResource);
-
-            log.info("Capture [{}] saved with status: {}", captureId, status);
-            return Mono.just("Capture processed for ID: " + captureId);
-
-        } catch (Exception e) {
-            log.error("Failed to process PAYMENT.CAPTURE.COMPLETED webhook", e);
-            return Mono.error(new RuntimeException("Failed to process capture"));
-        }
+            return payPalDataService.saveCapture(capture)
+                    .then(Mono.fromSupplier(() -> {
+                        log.info("Capture [{}] saved with status: {}", captureId, capture.status());
+                        return "Capture processed for ID: " + captureId;
+                    }));
+        });
     }
 
-    public Mono<String> getOrderIdFromCapture(String accessToken, String captureId) {
-        return webClient.get()
-                .uri("/v2/payments/captures/{captureId}", captureId)
-                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .flatMap(captureDetails -> {
-                    List<Map<String, Object>> links = (List<Map<String, Object>>) captureDetails.get("links");
-                    if (links != null) {
-                        for (Map<String, Object> link : links) {
-                            if ("up".equals(link.get("rel"))) {
-                                String href = (String) link.get("href");
-                                String[] parts = href.split("/"); // extract order ID from URL
-                                return Mono.just(parts[parts.length - 1]);
-                            }
-                        }
-                    }
-                    return Mono.empty();
-                });
+    /**
+     * Request id for capturing an order. It only depends on the order, so the webhook
+     * auto-capture and a user-driven capture of the same order are one request to PayPal.
+     */
+    public static String captureRequestId(String orderId) {
+        return "capture-" + orderId;
     }
 
-
+    private static Consumer<ClientHttpRequest> responseTimeout(Duration timeout) {
+        return request -> {
+            HttpClientRequest reactorRequest = request.getNativeRequest();
+            reactorRequest.responseTimeout(timeout);
+        };
+    }
 }
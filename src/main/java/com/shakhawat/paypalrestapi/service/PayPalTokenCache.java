@@ -0,0 +1,128 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Caches the PayPal OAuth access token until shortly before it expires.
+ * Concurrent callers share a single in-flight token request, and the token is
+ * refreshed in the background {@code refreshBeforeExpiry} ahead of its expiry.
+ */
+@Slf4j
+public class PayPalTokenCache {
+
+    // Never hand out a token that would expire while the request is in flight
+    private static final Duration EXPIRY_SAFETY_MARGIN = Duration.ofSeconds(30);
+
+    public record AccessToken(String value, Instant expiresAt) {
+
+        boolean isUsableAt(Instant now) {
+            return now.isBefore(expiresAt.minus(EXPIRY_SAFETY_MARGIN));
+        }
+    }
+
+    private final Supplier<Mono<AccessToken>> tokenSupplier;
+    private final Duration refreshBeforeExpiry;
+
+    private final AtomicReference<AccessToken> token = new AtomicReference<>();
+    private final AtomicReference<Mono<AccessToken>> inFlight = new AtomicReference<>();
+    private final AtomicReference<Disposable> scheduledRefresh = new AtomicReference<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter refreshes;
+
+    public PayPalTokenCache(Supplier<Mono<AccessToken>> tokenSupplier, Duration refreshBeforeExpiry, MeterRegistry meterRegistry) {
+        this.tokenSupplier = tokenSupplier;
+        this.refreshBeforeExpiry = refreshBeforeExpiry;
+        this.hits = Counter.builder("paypal.token.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("paypal.token.cache").tag("result", "miss").register(meterRegistry);
+        this.refreshes = Counter.builder("paypal.token.refresh").register(meterRegistry);
+    }
+
+    public Mono<String> getToken() {
+        return Mono.defer(() -> {
+            AccessToken current = token.get();
+            if (current != null && current.isUsableAt(Instant.now())) {
+                hits.increment();
+                return Mono.just(current.value());
+            }
+            misses.increment();
+            return fetch().map(AccessToken::value);
+        });
+    }
+
+    /**
+     * Drops the cached token, but only if it is still the one PayPal rejected,
+     * so a token refreshed in the meantime is not thrown away.
+     */
+    public void invalidate(String rejectedToken) {
+        AccessToken current = token.get();
+        if (current != null && current.value().equals(rejectedToken) && token.compareAndSet(current, null)) {
+            log.info("Invalidated cached PayPal access token");
+        }
+    }
+
+    public void shutdown() {
+        Disposable refresh = scheduledRefresh.getAndSet(null);
+        if (refresh != null) {
+            refresh.dispose();
+        }
+    }
+
+    private Mono<AccessToken> fetch() {
+        while (true) {
+            Mono<AccessToken> pending = inFlight.get();
+            if (pending != null) {
+                return pending;
+            }
+
+            Mono<AccessToken> request = tokenSupplier.get()
+                    .switchIfEmpty(Mono.error(new IllegalStateException("PayPal returned no access token")))
+                    .doOnNext(this::onTokenIssued)
+                    .doOnError(e -> inFlight.set(null))
+                    .cache();
+
+            if (inFlight.compareAndSet(null, request)) {
+                return request;
+            }
+        }
+    }
+
+    private void onTokenIssued(AccessToken issued) {
+        // Publish the token before releasing the in-flight slot so no caller sees neither
+        token.set(issued);
+        inFlight.set(null);
+
+        Duration delay = Duration.between(Instant.now(), issued.expiresAt().minus(refreshBeforeExpiry));
+        if (delay.isNegative()) {
+            // Lifetime is shorter than the refresh window; callers will refresh on demand
+            return;
+        }
+
+        Disposable next = Schedulers.parallel().schedule(this::refresh, delay.toMillis(), TimeUnit.MILLISECONDS);
+        Disposable previous = scheduledRefresh.getAndSet(next);
+        if (previous != null) {
+            previous.dispose();
+        }
+        log.debug("PayPal access token cached until {}, refresh in {}", issued.expiresAt(), delay);
+    }
+
+    private void refresh() {
+        refreshes.increment();
+        fetch().subscribe(
+                refreshed -> log.debug("Refreshed PayPal access token ahead of expiry"),
+                e -> log.warn("Background refresh of PayPal access token failed, will refresh on demand", e)
+        );
+    }
+}
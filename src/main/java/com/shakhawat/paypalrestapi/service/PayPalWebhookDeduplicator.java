@@ -0,0 +1,92 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, time-limited memory of webhook event ids that have already been accepted,
+ * so PayPal redeliveries are answered before any verification or database work.
+ * The unique index on {@code paypal_webhook_event.event_id} stays the source of truth;
+ * this only short-circuits the common case on the node that saw the event before.
+ */
+@Component
+public class PayPalWebhookDeduplicator {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    // Insertion ordered, so the eldest entry is also the one that expires first
+    private final LinkedHashMap<String, Long> seen;
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+
+    public PayPalWebhookDeduplicator(
+            @Value("${paypal.webhook.dedup.max-entries:100000}") int maxEntries,
+            @Value("${paypal.webhook.dedup.ttl:72h}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.seen = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > PayPalWebhookDeduplicator.this.maxEntries;
+            }
+        };
+        this.memoryHits = Counter.builder("paypal.webhook.duplicates").tag("source", "memory").register(meterRegistry);
+        this.databaseHits = Counter.builder("paypal.webhook.duplicates").tag("source", "database").register(meterRegistry);
+        Gauge.builder("paypal.webhook.dedup.size", this, PayPalWebhookDeduplicator::size).register(meterRegistry);
+    }
+
+    public boolean isDuplicate(String eventId) {
+        if (eventId == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        synchronized (seen) {
+            evictExpired(now);
+            if (seen.containsKey(eventId)) {
+                memoryHits.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public void markSeen(String eventId) {
+        if (eventId == null) {
+            return;
+        }
+        synchronized (seen) {
+            seen.remove(eventId);
+            seen.put(eventId, System.nanoTime() + ttlNanos);
+        }
+    }
+
+    /** Records a redelivery that got past this filter and was rejected by the unique index. */
+    public void markDuplicateInDatabase(String eventId) {
+        databaseHits.increment();
+        markSeen(eventId);
+    }
+
+    public int size() {
+        synchronized (seen) {
+            return seen.size();
+        }
+    }
+
+    private void evictExpired(long now) {
+        var iterator = seen.values().iterator();
+        while (iterator.hasNext() && iterator.next() - now <= 0) {
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.shakhawat.paypalrestapi.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maintains the monthly partitions of the webhook event log created by {@code schema.sql}.
+ * Partitions for the current and the next {@code premake-months} months always exist, since
+ * an event whose month has no partition cannot be stored. Partitions older than
+ * {@code retention-months} are exported to {@code <archive-directory>/<partition>.ndjson.gz}
+ * (one JSON row per line) when a directory is configured, then detached and dropped together
+ * with their event ids. A partition that still holds unfinished events is kept.
+ */
+@Slf4j
+@Service
+public class PayPalWebhookEventPartitions {
+
+    private static final String TABLE = "paypal_webhook_event";
+    private static final Pattern PARTITION_NAME = Pattern.compile(TABLE + "_p(\\d{6})");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final Path archiveDirectory;
+    private final String compression;
+
+    public PayPalWebhookEventPartitions(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${paypal.webhook.event-log.premake-months:3}") int premakeMonths,
+            @Value("${paypal.webhook.event-log.retention-months:12}") int retentionMonths,
+            @Value("${paypal.webhook.event-log.archive-directory:}") String archiveDirectory,
+            @Value("${paypal.webhook.event-log.compression:}") String compression
+    ) {
+        if (!compression.isEmpty() && !compression.equals("pglz") && !compression.equals("lz4")) {
+            throw new IllegalArgumentException("paypal.webhook.event-log.compression must be pglz or lz4");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.archiveDirectory = archiveDirectory.isBlank() ? null : Path.of(archiveDirectory);
+        this.compression = compression;
+    }
+
+    // Runs before the web server starts, so no event arrives for a month without a partition
+    @PostConstruct
+    public void init() {
+        applyCompression();
+        createUpcomingPartitions();
+    }
+
+    @Scheduled(fixedDelayString = "${paypal.webhook.event-log.maintenance-interval:6h}",
+            initialDelayString = "${paypal.webhook.event-log.maintenance-interval:6h}")
+    public void maintain() {
+        createUpcomingPartitions();
+        if (retentionMonths > 0) {
+            expirePartitions(YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths));
+        }
+    }
+
+    void createUpcomingPartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF " + TABLE
+                    + " FOR VALUES FROM ('" + start(month) + "') TO ('" + start(month.plusMonths(1)) + "')");
+        }
+    }
+
+    /** Archives and drops every partition of a month before {@code oldestKept}. */
+    void expirePartitions(YearMonth oldestKept) {
+        for (String partition : partitions()) {
+            Matcher name = PARTITION_NAME.matcher(partition);
+            if (!name.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.parse(name.group(1), MONTH);
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            try {
+                expire(partition, month);
+            } catch (DataAccessException | UncheckedIOException e) {
+                log.error("Could not expire webhook event partition {}", partition, e);
+            }
+        }
+    }
+
+    private void expire(String partition, YearMonth month) {
+        Boolean unfinished = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE status IN ('PENDING', 'PROCESSING'))", Boolean.class);
+        if (Boolean.TRUE.equals(unfinished)) {
+            log.warn("Webhook event partition {} still has unfinished events; keeping it", partition);
+            return;
+        }
+
+        if (archiveDirectory != null) {
+            Path archive = archive(partition);
+            log.info("Archived webhook event partition {} to {}", partition, archive);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+            jdbcTemplate.update("DELETE FROM paypal_webhook_event_key WHERE received_at < ?",
+                    Timestamp.from(start(month.plusMonths(1))));
+        });
+        log.info("Dropped webhook event partition {}", partition);
+    }
+
+    /** Streams the partition into a gzipped NDJSON file, written under a temporary name first. */
+    private Path archive(String partition) {
+        Path target = archiveDirectory.resolve(partition + ".ndjson.gz");
+        Path temp = archiveDirectory.resolve(partition + ".ndjson.gz.tmp");
+        try {
+            Files.createDirectories(archiveDirectory);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+                AtomicLong rows = new AtomicLong();
+                // A cursor only streams inside a transaction; otherwise the driver reads the whole partition
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            "SELECT to_jsonb(e) FROM " + partition + " e ORDER BY id");
+                    statement.setFetchSize(1000);
+                    return statement;
+                }, row -> {
+                    try {
+                        out.write(row.getString(1));
+                        out.write('\n');
+                        rows.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                log.debug("Exported {} rows of {}", rows.get(), partition);
+            }
+            return Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not archive " + partition, e);
+        }
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = CAST(? AS regclass)
+                ORDER BY c.relname
+                """, String.class, TABLE);
+    }
+
+    private void applyCompression() {
+        if (compression.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ALTER COLUMN event_data SET COMPRESSION " + compression);
+        } catch (DataAccessException e) {
+            log.warn("Could not use {} compression for webhook payloads, keeping the server default: {}",
+                    compression, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    static String partitionName(YearMonth month) {
+        return TABLE + "_p" + month.format(MONTH);
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
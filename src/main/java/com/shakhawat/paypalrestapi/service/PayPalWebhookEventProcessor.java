@@ -0,0 +1,86 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import com.shakhawat.paypalrestapi.model.RefundResource;
+import com.shakhawat.paypalrestapi.model.ResourceReference;
+import com.shakhawat.paypalrestapi.model.WebhookEnvelope;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+
+/**
+ * Applies a verified webhook event. Runs on the inbox workers, after PayPal has
+ * already been acknowledged, so failures are signalled as errors and retried.
+ * The resource is only decoded, into the type matching the event, when a handler needs it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PayPalWebhookEventProcessor {
+
+    private final PayPalService payPalService;
+    private final PayPalDataService dataService;
+    private final PayPalOrderProjection orderProjection;
+    private final PayPalCaptureCoordinator captureCoordinator;
+    private final ObjectMapper objectMapper;
+
+    public Mono<String> process(WebhookEnvelope event) {
+        String eventType = event.eventType();
+        if (event.resource() == null) {
+            return Mono.just("No resource in " + eventType + " event");
+        }
+
+        if ("CHECKOUT.ORDER.APPROVED".equalsIgnoreCase(eventType)) {
+            return Mono.fromCallable(() -> event.resourceAs(objectMapper, OrderResponse.class))
+                    .flatMap(order -> orderProjection.apply(OrderEvent.approved(order.id()))
+                            .then(autoCapture(order.id())));
+        }
+
+        if ("PAYMENT.CAPTURE.COMPLETED".equalsIgnoreCase(eventType)) {
+            return Mono.fromCallable(() -> event.resourceAs(objectMapper, CaptureResource.class))
+                    .flatMap(capture -> payPalService.handlePaymentCaptureCompletedWebhook(capture)
+                            .flatMap(result -> orderProjection.apply(OrderEvent.captured(null, capture)).thenReturn(result)));
+        }
+
+        // Handle refund webhook
+        if ("PAYMENT.CAPTURE.REFUNDED".equals(eventType)) {
+            return Mono.fromCallable(() -> event.resourceAs(objectMapper, RefundResource.class))
+                    .flatMap(refund -> dataService.saveRefund(refund, null)
+                            .then(orderProjection.apply(OrderEvent.refunded(refund, null)))
+                            .thenReturn("Refund captured via webhook: " + refund.id()));
+        }
+
+        return Mono.just("No handler for " + eventType);
+    }
+
+    // Goes through the coordinator, so it cannot race a capture requested through the API
+    private Mono<String> autoCapture(String orderId) {
+        return captureCoordinator.capture(orderId)
+                .flatMap(captureResponse -> {
+                    if (captureResponse.firstCapture() == null) {
+                        return Mono.just("No captures found in order " + orderId);
+                    }
+                    // Stored as the API capture stores it, with the order id and payer taken from the response
+                    return dataService.saveCapturedOrder(orderId, captureResponse)
+                            .flatMap(capture -> orderProjection.apply(OrderEvent.captured(orderId, capture)))
+                            .thenReturn("Capture saved for order " + orderId);
+                });
+    }
+
+    /**
+     * Key used to keep events for the same order in sequence: the order id when
+     * PayPal supplies it, otherwise the id of the resource itself.
+     */
+    public String resolveResourceId(WebhookEnvelope event) throws IOException {
+        ResourceReference resource = event.resourceAs(objectMapper, ResourceReference.class);
+        if (resource == null) {
+            return null;
+        }
+        return resource.orderId() != null ? resource.orderId() : resource.id();
+    }
+}
@@ -0,0 +1,202 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.dto.PayPalWebhookEventDto;
+import com.shakhawat.paypalrestapi.model.WebhookEnvelope;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Durable inbox for verified webhook events. The webhook endpoint only appends the
+ * event and acknowledges PayPal; a bounded set of workers drains the inbox here.
+ * Events are sharded by resource id so events for one order are applied in order,
+ * failed events are retried with exponential backoff and finally dead-lettered. Across
+ * instances only the events of the partitions leased by this node are claimed.
+ */
+@Slf4j
+@Service
+public class PayPalWebhookInbox {
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+
+    private final PayPalDataService dataService;
+    private final PayPalWebhookEventProcessor eventProcessor;
+    private final PayPalWebhookLeases leases;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+
+    private final int batchSize;
+    private final int workers;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration processingTimeout;
+    private final Duration claimTimeout;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public PayPalWebhookInbox(
+            PayPalDataService dataService,
+            PayPalWebhookEventProcessor eventProcessor,
+            PayPalWebhookLeases leases,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            ObservationRegistry observationRegistry,
+            @Value("${paypal.webhook.inbox.batch-size:100}") int batchSize,
+            @Value("${paypal.webhook.inbox.workers:8}") int workers,
+            @Value("${paypal.webhook.inbox.max-attempts:8}") int maxAttempts,
+            @Value("${paypal.webhook.inbox.retry-backoff:5s}") Duration retryBackoff,
+            @Value("${paypal.webhook.inbox.processing-timeout:60s}") Duration processingTimeout,
+            @Value("${paypal.webhook.inbox.claim-timeout:5m}") Duration claimTimeout
+    ) {
+        this.dataService = dataService;
+        this.eventProcessor = eventProcessor;
+        this.leases = leases;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.batchSize = batchSize;
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.processingTimeout = processingTimeout;
+        this.claimTimeout = claimTimeout;
+    }
+
+    /**
+     * Appends a verified event to the inbox. Completes empty when an event with the same
+     * PayPal id is already there, i.e. the delivery is a duplicate.
+     */
+    public Mono<PayPalWebhookEventDto> enqueue(WebhookEnvelope event, byte[] payload) {
+        return Mono.fromCallable(() -> eventProcessor.resolveResourceId(event))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(resourceId -> dataService.saveWebhookEvent(event.id(), event.eventType(), resourceId.orElse(null), new String(payload, StandardCharsets.UTF_8)))
+                .onErrorResume(DataIntegrityViolationException.class, e -> {
+                    log.info("Webhook event {} is already in the inbox", event.id());
+                    return Mono.empty();
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${paypal.webhook.inbox.poll-interval:500ms}")
+    public void poll() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drain();
+        } catch (Exception e) {
+            log.error("Webhook inbox drain failed", e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${paypal.webhook.inbox.claim-timeout:5m}")
+    public void releaseStaleClaims() {
+        Integer released = dataService.releaseStaleWebhookEvents(Instant.now().minus(claimTimeout)).block();
+        if (released != null && released > 0) {
+            log.warn("Released {} webhook events stuck in processing for more than {}", released, claimTimeout);
+        }
+    }
+
+    private void drain() {
+        if (leases.owned().isEmpty()) {
+            return;
+        }
+        List<PayPalWebhookEventDto> batch;
+        do {
+            batch = dataService.claimWebhookEvents(leases.nodeId(), leases.partitions(), batchSize).block();
+            if (batch == null || batch.isEmpty()) {
+                return;
+            }
+
+            Flux.fromIterable(batch)
+                    .groupBy(event -> Math.floorMod(shardKey(event).hashCode(), workers))
+                    .flatMap(shard -> shard.concatMap(this::process), workers)
+                    .blockLast();
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * Applies one event, observed as {@code paypal.webhook.processing} by event type, so the
+     * PayPal calls and writes it makes are traced beneath it.
+     */
+    private Mono<Void> process(PayPalWebhookEventDto event) {
+        return Mono.fromCallable(() -> objectMapper.readValue(event.getEventData(), WebhookEnvelope.class))
+                .flatMap(eventProcessor::process)
+                .timeout(processingTimeout)
+                .doOnNext(result -> log.info("Webhook event [{}] {} processed: {}", event.getId(), event.getEventType(), result))
+                .then(dataService.markWebhookEventProcessed(event.getId()))
+                .doOnSuccess(ignored -> count(event, "processed"))
+                .name("paypal.webhook.processing")
+                .tag("event_type", eventType(event))
+                .tap(Micrometer.observation(observationRegistry))
+                .onErrorResume(e -> onFailure(event, e));
+    }
+
+    private Mono<Void> onFailure(PayPalWebhookEventDto event, Throwable e) {
+        if (!isRetryable(e) || event.getAttempts() >= maxAttempts) {
+            log.error("Webhook event [{}] {} dead-lettered after {} attempts", event.getId(), event.getEventType(), event.getAttempts(), e);
+            count(event, "dead-lettered");
+            return dataService.deadLetterWebhookEvent(event.getId(), e.toString());
+        }
+
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(event.getAttempts() - 1, 16));
+        if (backoff.compareTo(MAX_BACKOFF) > 0) {
+            backoff = MAX_BACKOFF;
+        }
+        log.warn("Webhook event [{}] {} failed on attempt {}, retrying in {}", event.getId(), event.getEventType(), event.getAttempts(), backoff, e);
+        count(event, "retried");
+        return dataService.rescheduleWebhookEvent(event.getId(), Instant.now().plus(backoff), e.toString());
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof JsonProcessingException) {
+            return false;
+        }
+        if (e instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError()) {
+            // PayPal rejected the request itself; only auth, timeout and rate limits are worth another try
+            return response.getStatusCode().isSameCodeAs(HttpStatus.UNAUTHORIZED)
+                    || response.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT)
+                    || response.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+        }
+        return true;
+    }
+
+    /** Counts outcomes as {@code paypal.webhook.outcomes} by event type. */
+    private void count(PayPalWebhookEventDto event, String outcome) {
+        Counter.builder("paypal.webhook.outcomes")
+                .tag("event_type", eventType(event))
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String eventType(PayPalWebhookEventDto event) {
+        return event.getEventType() != null ? event.getEventType() : "unknown";
+    }
+
+    private static String shardKey(PayPalWebhookEventDto event) {
+        return event.getResourceId() != null ? event.getResourceId() : String.valueOf(event.getId());
+    }
+}
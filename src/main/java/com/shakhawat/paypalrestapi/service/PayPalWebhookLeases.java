@@ -0,0 +1,154 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.repository.PayPalWebhookLeaseRepository;
+import com.shakhawat.paypalrestapi.repository.PayPalWebhookNodeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Splits webhook inbox work between the running instances. Events are assigned to one of
+ * {@code partitions} partitions by hash of their resource id, and only the holder of a
+ * partition's lease claims its events (checked in the claim query itself, so a node that
+ * lost a lease stops at once). Each heartbeat registers the node, renews its leases and
+ * moves it towards an even share, {@code ceil(partitions / live nodes)}: a node over its
+ * share releases the surplus and one under it takes free or expired partitions. A node
+ * that joins thus gets partitions within two heartbeats, and the partitions of a node that
+ * stops (or dies, once its leases expire after {@code ttl}) are taken over by the others.
+ * <p>
+ * Partition handover keeps per-order ordering: the claim query skips an event while an
+ * earlier event of the same resource is pending or still processing on the previous owner.
+ * <p>
+ * Publishes {@code paypal.webhook.partitions.owned} and {@code paypal.webhook.partitions.changes}
+ * by action ({@code acquired}, {@code released}, {@code lost}).
+ */
+@Slf4j
+@Service
+public class PayPalWebhookLeases {
+
+    private final PayPalWebhookLeaseRepository leaseRepository;
+    private final PayPalWebhookNodeRepository nodeRepository;
+    private final String nodeId;
+    private final int partitions;
+    private final Duration ttl;
+
+    private final Counter acquired;
+    private final Counter released;
+    private final Counter lost;
+
+    private volatile Set<Integer> owned = Set.of();
+
+    public PayPalWebhookLeases(
+            PayPalWebhookLeaseRepository leaseRepository,
+            PayPalWebhookNodeRepository nodeRepository,
+            MeterRegistry meterRegistry,
+            @Value("${paypal.webhook.lease.partitions:16}") int partitions,
+            @Value("${paypal.webhook.lease.ttl:30s}") Duration ttl
+    ) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("paypal.webhook.lease.partitions must be at least 1");
+        }
+        this.leaseRepository = leaseRepository;
+        this.nodeRepository = nodeRepository;
+        this.nodeId = UUID.randomUUID().toString();
+        this.partitions = partitions;
+        this.ttl = ttl;
+        this.acquired = counter(meterRegistry, "acquired");
+        this.released = counter(meterRegistry, "released");
+        this.lost = counter(meterRegistry, "lost");
+        Gauge.builder("paypal.webhook.partitions.owned", this, leases -> leases.owned.size()).register(meterRegistry);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    /** Partitions held as of the last heartbeat. */
+    public Set<Integer> owned() {
+        return owned;
+    }
+
+    @Scheduled(fixedDelayString = "${paypal.webhook.lease.heartbeat-interval:10s}")
+    public void heartbeat() {
+        try {
+            rebalance();
+        } catch (Exception e) {
+            log.error("Webhook partition heartbeat failed", e);
+        }
+    }
+
+    private void rebalance() {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(ttl);
+        nodeRepository.heartbeat(nodeId, now);
+        nodeRepository.deleteStale(now.minus(ttl));
+        long liveNodes = Math.max(1, nodeRepository.countLive(now.minus(ttl)));
+        int share = (int) ((partitions + liveNodes - 1) / liveNodes);
+
+        List<Integer> held = new ArrayList<>(leaseRepository.renew(nodeId, now, expiresAt));
+        Set<Integer> missing = new HashSet<>(owned);
+        held.forEach(missing::remove);
+        if (!missing.isEmpty()) {
+            log.warn("Lost webhook partitions {}: leases expired before they were renewed", missing);
+            lost.increment(missing.size());
+        }
+
+        if (held.size() > share) {
+            List<Integer> surplus = new ArrayList<>(held.subList(share, held.size()));
+            leaseRepository.release(nodeId, surplus);
+            held.removeAll(surplus);
+            released.increment(surplus.size());
+            log.info("Released webhook partitions {} for a share of {} over {} nodes", surplus, share, liveNodes);
+        } else if (held.size() < share) {
+            Set<Integer> taken = new HashSet<>(leaseRepository.findLivePartitions(now));
+            // Start at a node specific offset so joining nodes do not all race for the same partitions
+            int offset = Math.floorMod(nodeId.hashCode(), partitions);
+            List<Integer> gained = new ArrayList<>();
+            for (int i = 0; i < partitions && held.size() + gained.size() < share; i++) {
+                int partition = (offset + i) % partitions;
+                if (!taken.contains(partition) && leaseRepository.acquire(partition, nodeId, now, expiresAt) == 1) {
+                    gained.add(partition);
+                }
+            }
+            if (!gained.isEmpty()) {
+                held.addAll(gained);
+                acquired.increment(gained.size());
+                log.info("Acquired webhook partitions {} for a share of {} over {} nodes", gained, share, liveNodes);
+            }
+        }
+        owned = Set.copyOf(held);
+    }
+
+    // Hands the partitions over right away instead of leaving them idle until the leases expire
+    @PreDestroy
+    public void shutdown() {
+        owned = Set.of();
+        try {
+            leaseRepository.releaseAll(nodeId);
+            nodeRepository.deleteById(nodeId);
+        } catch (Exception e) {
+            log.warn("Could not release webhook partitions on shutdown; they expire after {}", ttl, e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String action) {
+        return Counter.builder("paypal.webhook.partitions.changes").tag("action", action).register(meterRegistry);
+    }
+}
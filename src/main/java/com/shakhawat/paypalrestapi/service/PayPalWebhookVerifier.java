@@ -0,0 +1,128 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.model.VerifyWebhookSignatureRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Verifies PayPal webhook signatures. In {@code LOCAL} mode the signature is checked here
+ * against the certificate from {@code paypal-cert-url}, so the hot path needs neither an
+ * access token nor the verify-webhook-signature round-trip. {@code REMOTE} keeps the old
+ * PayPal API call, and {@code LOCAL_WITH_FALLBACK} uses it only when local verification
+ * cannot be carried out (certificate download failed, unsupported algorithm, ...).
+ */
+@Slf4j
+@Service
+public class PayPalWebhookVerifier {
+
+    public enum Mode {
+        LOCAL,
+        REMOTE,
+        LOCAL_WITH_FALLBACK
+    }
+
+    private static final Set<String> SUPPORTED_ALGORITHMS = Set.of("SHA256withRSA", "SHA384withRSA", "SHA512withRSA");
+
+    private final PayPalService payPalService;
+    private final PayPalCertificateCache certificateCache;
+    private final Mode mode;
+    private final MeterRegistry meterRegistry;
+
+    public PayPalWebhookVerifier(
+            PayPalService payPalService,
+            PayPalCertificateCache certificateCache,
+            @Value("${paypal.webhook.verification.mode:local-with-fallback}") Mode mode,
+            MeterRegistry meterRegistry
+    ) {
+        this.payPalService = payPalService;
+        this.certificateCache = certificateCache;
+        this.mode = mode;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Mono<Boolean> verify(HttpHeaders headers, byte[] payload) {
+        if (mode == Mode.REMOTE) {
+            return verifyRemotely(headers, payload);
+        }
+
+        Mono<Boolean> local = verifyLocally(headers, payload)
+                .doOnNext(valid -> count("local", valid ? "valid" : "invalid"))
+                .doOnError(e -> count("local", "error"));
+
+        if (mode == Mode.LOCAL) {
+            return local;
+        }
+        return local.onErrorResume(e -> {
+            log.warn("Local webhook verification unavailable, falling back to PayPal: {}", e.getMessage());
+            return verifyRemotely(headers, payload);
+        });
+    }
+
+    Mono<Boolean> verifyLocally(HttpHeaders headers, byte[] payload) {
+        String transmissionId = headers.getFirst("paypal-transmission-id");
+        String transmissionTime = headers.getFirst("paypal-transmission-time");
+        String transmissionSig = headers.getFirst("paypal-transmission-sig");
+        String certUrl = headers.getFirst("paypal-cert-url");
+        String authAlgo = headers.getFirst("paypal-auth-algo");
+
+        if (transmissionId == null || transmissionTime == null || transmissionSig == null || certUrl == null) {
+            log.warn("Webhook is missing PayPal transmission headers");
+            return Mono.just(false);
+        }
+        if (authAlgo == null || !SUPPORTED_ALGORITHMS.contains(authAlgo)) {
+            return Mono.error(new IllegalArgumentException("Unsupported webhook signature algorithm: " + authAlgo));
+        }
+
+        String signedMessage = transmissionId + "|" + transmissionTime + "|" + payPalService.getWebhookId() + "|" + crc32(payload);
+        return certificateCache.getCertificate(certUrl)
+                .map(certificate -> isSignatureValid(certificate, authAlgo, signedMessage, transmissionSig));
+    }
+
+    private Mono<Boolean> verifyRemotely(HttpHeaders headers, byte[] payload) {
+        VerifyWebhookSignatureRequest verifyPayload = payPalService.buildWebhookVerifyPayload(headers, new String(payload, StandardCharsets.UTF_8));
+        return payPalService.withAccessToken(accessToken -> payPalService.verifyWebhookSignature(accessToken, verifyPayload))
+                .doOnNext(valid -> count("remote", valid ? "valid" : "invalid"))
+                .doOnError(e -> count("remote", "error"));
+    }
+
+    private static boolean isSignatureValid(X509Certificate certificate, String algorithm, String message, String signature) {
+        try {
+            Signature verifier = Signature.getInstance(algorithm);
+            verifier.initVerify(certificate.getPublicKey());
+            verifier.update(message.getBytes(StandardCharsets.UTF_8));
+            return verifier.verify(Base64.getDecoder().decode(signature));
+        } catch (IllegalArgumentException | SignatureException e) {
+            // Signature header was not valid base64 or not a well-formed signature
+            return false;
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not verify webhook signature", e);
+        }
+    }
+
+    private static long crc32(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    private void count(String verificationMode, String result) {
+        Counter.builder("paypal.webhook.verification")
+                .tag("mode", verificationMode)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
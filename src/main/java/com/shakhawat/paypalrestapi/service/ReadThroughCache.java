@@ -0,0 +1,87 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Bounded read-through cache in front of a blocking query. Caffeine evicts by size with
+ * W-TinyLFU, so a burst of one-off lookups does not push out the entries that are read
+ * often. Concurrent misses for one key share a single query on the {@link DatabaseScheduler}.
+ * <p>
+ * Negative results (an unknown id, nothing found) are cached too, for the shorter
+ * {@code negativeTtl}, as they are what duplicate checks mostly see. Writers keep entries
+ * current with {@link #put} and {@link #invalidate}; from inside a transaction these take
+ * effect once it commits, so a concurrent read cannot cache what was there before.
+ * <p>
+ * Publishes Caffeine's {@code cache.*} meters (gets by hit/miss, evictions, size, ...) and
+ * {@code cache.hit.ratio}, tagged {@code cache=<name>}.
+ */
+public class ReadThroughCache<V> {
+
+    private final AsyncCache<String, V> cache;
+    private final DatabaseScheduler databaseScheduler;
+
+    public ReadThroughCache(String name, long maxSize, Duration ttl, Duration negativeTtl, Predicate<V> isNegative,
+                            DatabaseScheduler databaseScheduler, MeterRegistry meterRegistry) {
+        this.databaseScheduler = databaseScheduler;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.<String, V>writing((key, value) -> isNegative.test(value) ? negativeTtl : ttl))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    /** The cached value, or the result of {@code loader} (which must not return null) on a miss. */
+    public Mono<V> get(String key, Callable<V> loader) {
+        // Cancelling one reader must not cancel a load other readers are waiting for
+        return Mono.defer(() -> Mono.fromFuture(cache.get(key, (k, executor) -> databaseScheduler.call(loader).toFuture()), true));
+    }
+
+    /** The cached value when present and loaded, without querying. */
+    public V getIfPresent(String key) {
+        CompletableFuture<V> value = cache.getIfPresent(key);
+        return value != null && value.isDone() && !value.isCompletedExceptionally() ? value.join() : null;
+    }
+
+    public void put(String key, V value) {
+        afterCommit(() -> cache.put(key, CompletableFuture.completedFuture(value)));
+    }
+
+    public void invalidate(String key) {
+        afterCommit(() -> cache.synchronous().invalidate(key));
+    }
+
+    /** Drops every entry whose loaded value matches, for writes that cannot name the key. */
+    public void invalidateIf(Predicate<V> stale) {
+        afterCommit(() -> cache.synchronous().asMap().values().removeIf(stale));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,143 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.dto.ReconciliationRowDto;
+import com.shakhawat.paypalrestapi.model.Money;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Streams every order created in a time range with its captures and refunds, for reconciling
+ * against PayPal settlement reports. Rows are read through a server-side cursor and produced
+ * only as fast as the consumer takes them, so memory stays flat however large the range is.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReconciliationExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    // Orders come off idx_order_created_at and their captures and refunds off the foreign key indexes,
+    // so rows are produced in order without sorting the range first
+    private static final String ROWS = """
+            select new com.shakhawat.paypalrestapi.dto.ReconciliationRowDto(
+                o.orderId, o.status, o.amount, o.createdAt,
+                c.captureId, c.status, c.amount, c.payerEmail, c.updateTime,
+                r.refundId, r.status, r.amount, r.createTime)
+            from PayPalOrder o
+            left join PayPalCapture c on c.orderId = o.orderId
+            left join PayPalRefund r on r.captureId = c.captureId
+            where o.createdAt >= :from and o.createdAt < :to
+            order by o.createdAt, o.orderId, c.captureId, r.refundId
+            """;
+
+    private static final String CSV_HEADER = "order_id,order_status,order_amount,order_currency,order_created_at,"
+            + "capture_id,capture_status,capture_amount,capture_currency,payer_email,capture_update_time,"
+            + "refund_id,refund_status,refund_amount,refund_currency,refund_create_time";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final DatabaseScheduler databaseScheduler;
+    private final ObjectMapper objectMapper;
+
+    @Value("${paypal.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /** Rows for orders created in {@code [from, to)}, ordered by creation time. */
+    public Flux<ReconciliationRowDto> rows(Instant from, Instant to) {
+        return databaseScheduler.stream(() -> open(from, to));
+    }
+
+    /** The same rows rendered as lines of {@code format}, each ending in a newline; CSV starts with a header. */
+    public Flux<String> lines(Instant from, Instant to, Format format) {
+        Flux<String> lines = rows(from, to).map(row -> format == Format.CSV ? csv(row) : json(row));
+        return format == Format.CSV ? Flux.concat(Flux.just(CSV_HEADER + "\n"), lines) : lines;
+    }
+
+    // A dedicated entity manager, not bound to the calling thread, because the reactive pipeline
+    // may pull successive rows on different database threads. Nothing is managed: rows are DTOs.
+    private Stream<ReconciliationRowDto> open(Instant from, Instant to) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            // PostgreSQL only honours the fetch size inside a transaction
+            EntityTransaction transaction = entityManager.getTransaction();
+            transaction.begin();
+            return entityManager.createQuery(ROWS, ReconciliationRowDto.class)
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .getResultStream()
+                    .onClose(() -> {
+                        try {
+                            transaction.rollback();
+                        } finally {
+                            entityManager.close();
+                        }
+                    });
+        } catch (RuntimeException e) {
+            entityManager.close();
+            throw e;
+        }
+    }
+
+    private String json(ReconciliationRowDto row) {
+        try {
+            return objectMapper.writeValueAsString(row) + "\n";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Row cannot be serialized", e);
+        }
+    }
+
+    private static String csv(ReconciliationRowDto row) {
+        return String.join(",",
+                field(row.getOrderId()), field(row.getOrderStatus()), amount(row.getOrderAmount()),
+                field(row.getOrderCreatedAt()),
+                field(row.getCaptureId()), field(row.getCaptureStatus()), amount(row.getCaptureAmount()),
+                field(row.getPayerEmail()), field(row.getCaptureUpdateTime()),
+                field(row.getRefundId()), field(row.getRefundStatus()), amount(row.getRefundAmount()),
+                field(row.getRefundCreateTime())) + "\n";
+    }
+
+    // The value and currency columns
+    private static String amount(Money amount) {
+        return amount != null ? amount.value() + "," + amount.currency().code() : ",";
+    }
+
+    private static String field(Object value) {
+        String text = Objects.toString(value, "");
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
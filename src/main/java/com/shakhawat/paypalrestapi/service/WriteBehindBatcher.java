@@ -0,0 +1,206 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Collects writes from concurrent callers into a bounded queue and applies them in batches,
+ * one transaction per batch on the {@link DatabaseScheduler}, so Hibernate can send each
+ * batch as JDBC batches. A batch is flushed once it is full or after {@code maxDelay}.
+ * When a batch fails its writes are retried one per transaction, so a bad row only fails
+ * its own caller.
+ *
+ * <p>With {@link Durability#COMMIT} a caller completes once its batch has committed. With
+ * {@link Durability#QUEUED} it completes as soon as the write is queued; writes still queued
+ * when the process dies are lost.
+ *
+ * @param <T> a queued write
+ * @param <R> what the writer returns for each write, in the same order
+ */
+@Slf4j
+public class WriteBehindBatcher<T, R> {
+
+    public enum Durability {
+        COMMIT,
+        QUEUED
+    }
+
+    private record Pending<T, R>(T write, Sinks.One<R> done) {
+    }
+
+    private final String name;
+    private final int maxBatchSize;
+    private final Durability durability;
+    private final Function<List<T>, List<R>> writer;
+    private final DatabaseScheduler databaseScheduler;
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<Pending<T, R>> queue;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final Disposable timer;
+
+    private final DistributionSummary batchSizes;
+    private final Counter fallbacks;
+    private final Timer committed;
+    private final Timer failed;
+
+    public WriteBehindBatcher(
+            String name,
+            int maxBatchSize,
+            Duration maxDelay,
+            int capacity,
+            Durability durability,
+            Function<List<T>, List<R>> writer,
+            DatabaseScheduler databaseScheduler,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry
+    ) {
+        this.name = name;
+        this.maxBatchSize = maxBatchSize;
+        this.durability = durability;
+        this.writer = writer;
+        this.databaseScheduler = databaseScheduler;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.batchSizes = DistributionSummary.builder("paypal.db.batch.size").tag("name", name).register(meterRegistry);
+        this.fallbacks = Counter.builder("paypal.db.batch.fallbacks").tag("name", name).register(meterRegistry);
+        // Time of each batch transaction, from the first statement to the commit
+        this.committed = Timer.builder("paypal.db.batch.write").tag("name", name).tag("outcome", "committed").register(meterRegistry);
+        this.failed = Timer.builder("paypal.db.batch.write").tag("name", name).tag("outcome", "failed").register(meterRegistry);
+        Gauge.builder("paypal.db.batch.queued", queue, BlockingQueue::size).tag("name", name).register(meterRegistry);
+
+        this.timer = Flux.interval(maxDelay, Schedulers.parallel())
+                .subscribe(tick -> {
+                    if (!queue.isEmpty()) {
+                        triggerFlush();
+                    }
+                });
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /** Queues a write. Fails with {@link RejectedExecutionException} when the queue is full. */
+    public Mono<R> submit(T write) {
+        return Mono.defer(() -> {
+            Pending<T, R> pending = new Pending<>(write, Sinks.one());
+            if (!queue.offer(pending)) {
+                return Mono.error(new RejectedExecutionException("Write queue " + name + " is full"));
+            }
+            if (queue.size() >= maxBatchSize) {
+                triggerFlush();
+            }
+            return durability == Durability.COMMIT ? pending.done().asMono() : Mono.empty();
+        });
+    }
+
+    /** Stops the timer and writes whatever is still queued. */
+    public void shutdown() {
+        timer.dispose();
+        drain();
+    }
+
+    private void triggerFlush() {
+        if (flushing.compareAndSet(false, true)) {
+            databaseScheduler.run(this::drainAndRelease)
+                    .subscribe(null, e -> {
+                        // Scheduler rejected the flush; the timer tries again
+                        flushing.set(false);
+                        log.warn("Could not schedule flush of write queue {}: {}", name, e.getMessage());
+                    });
+        }
+    }
+
+    private void drainAndRelease() {
+        try {
+            drain();
+        } finally {
+            flushing.set(false);
+        }
+        if (queue.size() >= maxBatchSize) {
+            triggerFlush();
+        }
+    }
+
+    private void drain() {
+        List<Pending<T, R>> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Pending<T, R>> batch) {
+        batchSizes.record(batch.size());
+        try {
+            List<R> results = execute(batch.stream().map(Pending::write).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                emit(batch.get(i), results.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                fail(batch.getFirst(), e);
+                return;
+            }
+            fallbacks.increment();
+            log.warn("Batch of {} writes to {} failed, retrying them one by one: {}", batch.size(), name, e.getMessage());
+            for (Pending<T, R> pending : batch) {
+                try {
+                    List<R> result = execute(List.of(pending.write()));
+                    emit(pending, result.getFirst());
+                } catch (RuntimeException rowError) {
+                    fail(pending, rowError);
+                }
+            }
+        }
+    }
+
+    private List<R> execute(List<T> writes) {
+        long started = System.nanoTime();
+        try {
+            List<R> results = transactionTemplate.execute(status -> writer.apply(writes));
+            committed.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return results;
+        } catch (RuntimeException e) {
+            failed.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private void emit(Pending<T, R> pending, R result) {
+        if (result == null) {
+            pending.done().tryEmitEmpty();
+        } else {
+            pending.done().tryEmitValue(result);
+        }
+    }
+
+    private void fail(Pending<T, R> pending, RuntimeException e) {
+        if (durability == Durability.QUEUED) {
+            log.error("Queued write to {} lost: {}", name, pending.write(), e);
+        }
+        pending.done().tryEmitError(e);
+    }
+}
@@ -0,0 +1,120 @@
+-- Runs on every start before Hibernate (spring.sql.init.mode=always), so every statement is idempotent.
+-- Statements end with a line holding only '@@' (spring.sql.init.separator) because the DO block contains ';'.
+
+CREATE SEQUENCE IF NOT EXISTS paypal_webhook_event_seq INCREMENT BY 50
+@@
+
+-- Accepted PayPal event ids. A unique index on the partitioned event log would have to include received_at,
+-- so redeliveries are detected here instead; rows are removed together with their event log partition.
+CREATE TABLE IF NOT EXISTS paypal_webhook_event_key (
+    event_id    varchar(255) PRIMARY KEY,
+    received_at timestamptz  NOT NULL
+)
+@@
+CREATE INDEX IF NOT EXISTS idx_webhook_event_key_received_at ON paypal_webhook_event_key (received_at)
+@@
+
+-- Webhook event log, range-partitioned by month of received_at (UTC). PayPalWebhookEventPartitions creates
+-- upcoming partitions and archives or drops expired ones. A table from before partitioning is converted once.
+DO $$
+DECLARE
+    legacy boolean := EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('paypal_webhook_event') AND relkind = 'r');
+    month timestamp;
+BEGIN
+    IF to_regclass('paypal_webhook_event') IS NOT NULL AND NOT legacy THEN
+        RETURN;
+    END IF;
+
+    IF legacy THEN
+        ALTER TABLE paypal_webhook_event RENAME TO paypal_webhook_event_legacy;
+        -- A table as old as the first release has only id, event_type, event_data (text) and received_at;
+        -- this runs before Hibernate would add the rest
+        ALTER TABLE paypal_webhook_event_legacy
+            ADD COLUMN IF NOT EXISTS event_id        varchar(255),
+            ADD COLUMN IF NOT EXISTS resource_id     varchar(255),
+            ADD COLUMN IF NOT EXISTS status          varchar(255),
+            ADD COLUMN IF NOT EXISTS attempts        integer,
+            ADD COLUMN IF NOT EXISTS next_attempt_at timestamptz,
+            ADD COLUMN IF NOT EXISTS claimed_at      timestamptz,
+            ADD COLUMN IF NOT EXISTS processed_at    timestamptz,
+            ADD COLUMN IF NOT EXISTS last_error      varchar(1000);
+    END IF;
+
+    CREATE TABLE paypal_webhook_event (
+        id              bigint        NOT NULL,
+        event_id        varchar(255),
+        event_type      varchar(255),
+        event_data      jsonb,
+        received_at     timestamptz   NOT NULL,
+        resource_id     varchar(255),
+        status          varchar(255)  CHECK (status IN ('PENDING', 'PROCESSING', 'PROCESSED', 'DEAD_LETTER')),
+        attempts        integer       NOT NULL DEFAULT 0,
+        next_attempt_at timestamptz,
+        claimed_at      timestamptz,
+        processed_at    timestamptz,
+        last_error      varchar(1000),
+        CONSTRAINT paypal_webhook_event_pk PRIMARY KEY (id, received_at)
+    ) PARTITION BY RANGE (received_at);
+
+    IF legacy THEN
+        FOR month IN
+            SELECT DISTINCT date_trunc('month', coalesce(received_at, now()) AT TIME ZONE 'UTC')
+            FROM paypal_webhook_event_legacy
+        LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF paypal_webhook_event FOR VALUES FROM (%L) TO (%L)',
+                    'paypal_webhook_event_p' || to_char(month, 'YYYYMM'),
+                    month AT TIME ZONE 'UTC', (month + interval '1 month') AT TIME ZONE 'UTC');
+        END LOOP;
+
+        INSERT INTO paypal_webhook_event (id, event_id, event_type, event_data, received_at, resource_id, status,
+                                          attempts, next_attempt_at, claimed_at, processed_at, last_error)
+        -- Events from before the inbox were handled when they arrived, hence PROCESSED; their ids are in the payload
+        SELECT id, coalesce(event_id, event_data::jsonb ->> 'id'), event_type, event_data::jsonb,
+               coalesce(received_at, now()), coalesce(resource_id, event_data::jsonb #>> '{resource,id}'),
+               coalesce(status, 'PROCESSED'), coalesce(attempts, 0), next_attempt_at, claimed_at, processed_at, last_error
+        FROM paypal_webhook_event_legacy;
+
+        INSERT INTO paypal_webhook_event_key (event_id, received_at)
+        SELECT event_id, received_at FROM paypal_webhook_event WHERE event_id IS NOT NULL
+        ON CONFLICT DO NOTHING;
+
+        -- The rows kept their ids, so new ids must start past them. Hibernate's pooled optimizer takes a
+        -- sequence value as the top of a block of 50, hence the next value is at least max(id) + 50
+        PERFORM setval('paypal_webhook_event_seq', greatest(
+                (SELECT coalesce(max(id), 0) + 50 FROM paypal_webhook_event),
+                (SELECT last_value + 1 FROM paypal_webhook_event_seq)), false);
+
+        DROP TABLE paypal_webhook_event_legacy;
+    END IF;
+END $$
+@@
+
+CREATE INDEX IF NOT EXISTS idx_webhook_event_status_next_attempt ON paypal_webhook_event (status, next_attempt_at)
+@@
+CREATE INDEX IF NOT EXISTS idx_webhook_event_resource_status ON paypal_webhook_event (resource_id, status)
+@@
+CREATE INDEX IF NOT EXISTS idx_webhook_event_received_at ON paypal_webhook_event (received_at, id)
+@@
+CREATE INDEX IF NOT EXISTS idx_webhook_event_type_received_at ON paypal_webhook_event (event_type, received_at, id)
+@@
+
+-- Amounts were stored as double precision in "amount"; they are now exact minor units in "amount_minor"
+-- (see Money), with no decimals for the currencies PayPal treats as zero-decimal.
+DO $$
+DECLARE
+    t text;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['paypal_order', 'pay_pal_capture', 'paypal_refunds'] LOOP
+        IF EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = current_schema() AND table_name = t AND column_name = 'amount') THEN
+            EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS amount_minor bigint', t);
+            EXECUTE format('UPDATE %I SET amount_minor = round(amount * CASE WHEN currency IN (''HUF'', ''JPY'', ''TWD'') THEN 1 ELSE 100 END) '
+                    || 'WHERE amount IS NOT NULL AND amount_minor IS NULL', t);
+            -- Money needs both or neither
+            EXECUTE format('UPDATE %I SET currency = NULL WHERE amount_minor IS NULL AND currency IS NOT NULL', t);
+            EXECUTE format('UPDATE %I SET amount_minor = NULL WHERE currency IS NULL AND amount_minor IS NOT NULL', t);
+            EXECUTE format('ALTER TABLE %I DROP COLUMN amount', t);
+        END IF;
+    END LOOP;
+END $$
+@@
@@ -0,0 +1,139 @@
+package com.shakhawat.paypalrestapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.model.WebhookEnvelope;
+import com.shakhawat.paypalrestapi.service.PayPalWebhookInbox;
+import com.shakhawat.paypalrestapi.service.PayPalWebhookLeases;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs several instances of the application against one local Postgres, in a schema of
+ * their own, and checks that webhook partitions are spread over them and rebalanced.
+ */
+class PaypalRestApiClusterTests {
+
+    private static final String SCHEMA = "paypal_rest_api_cluster_test";
+    private static final int PARTITIONS = 12;
+
+    private static Properties datasource;
+    private static final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @BeforeAll
+    static void createSchema() throws Exception {
+        datasource = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        execute("CREATE SCHEMA " + SCHEMA);
+    }
+
+    @AfterAll
+    static void dropSchema() throws Exception {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+    }
+
+    @Test
+    void spreadsWebhookPartitionsOverTheRunningNodes() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            nodes.add(startNode());
+        }
+        awaitBalanced(nodes, 4);
+
+        PayPalWebhookInbox inbox = nodes.get(0).getBean(PayPalWebhookInbox.class);
+        ObjectMapper objectMapper = nodes.get(0).getBean(ObjectMapper.class);
+        for (int i = 0; i < 60; i++) {
+            String payload = """
+                    {"id": "WH-CLUSTER-%d", "event_type": "TEST.NOOP", "resource": {"id": "R-%d"}}
+                    """.formatted(i, i % 20);
+            WebhookEnvelope event = objectMapper.readValue(payload, WebhookEnvelope.class);
+            inbox.enqueue(event, payload.getBytes(StandardCharsets.UTF_8)).block();
+        }
+
+        JdbcTemplate jdbcTemplate = nodes.get(0).getBean(JdbcTemplate.class);
+        await(() -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM paypal_webhook_event WHERE status = 'PROCESSED'", Integer.class) == 60);
+        // Each resource's events were still applied in the order they arrived
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM paypal_webhook_event a JOIN paypal_webhook_event b
+                    ON a.resource_id = b.resource_id AND a.id < b.id AND a.processed_at > b.processed_at
+                """, Integer.class)).isZero();
+
+        List<Double> processed = nodes.stream()
+                .map(node -> node.getBean(MeterRegistry.class).find("paypal.webhook.outcomes").counters().stream()
+                        .mapToDouble(counter -> counter.count()).sum())
+                .toList();
+        assertThat(processed.stream().mapToDouble(Double::doubleValue).sum()).isEqualTo(60);
+        assertThat(processed.stream().filter(count -> count > 0)).hasSizeGreaterThan(1);
+
+        // A node leaving hands its partitions to the others
+        nodes.remove(2).close();
+        awaitBalanced(nodes, 6);
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(PaypalRestApiApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + datasource.getProperty("spring.datasource.url")
+                                .replace("currentSchema=paypal_rest_api", "currentSchema=" + SCHEMA),
+                        "--spring.datasource.hikari.maximum-pool-size=4",
+                        "--spring.jpa.show-sql=false",
+                        "--paypal.db.pool-size=4",
+                        "--paypal.webhook.inbox.poll-interval=100ms",
+                        "--paypal.webhook.lease.partitions=" + PARTITIONS,
+                        "--paypal.webhook.lease.heartbeat-interval=200ms",
+                        "--paypal.webhook.lease.ttl=3s");
+    }
+
+    private static void awaitBalanced(List<ConfigurableApplicationContext> nodes, int share) throws InterruptedException {
+        await(() -> {
+            Set<Integer> all = new HashSet<>();
+            int total = 0;
+            for (ConfigurableApplicationContext node : nodes) {
+                Set<Integer> owned = node.getBean(PayPalWebhookLeases.class).owned();
+                if (owned.size() != share) {
+                    return false;
+                }
+                all.addAll(owned);
+                total += owned.size();
+            }
+            return total == PARTITIONS && all.size() == PARTITIONS;
+        });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 30s").isLessThan(deadline);
+            Thread.sleep(100);
+        }
+    }
+
+    private static void execute(String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection(datasource.getProperty("spring.datasource.url"),
+                datasource.getProperty("spring.datasource.username"), datasource.getProperty("spring.datasource.password"));
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.shakhawat.paypalrestapi.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTests {
+
+    @Test
+    void parsesAndFormatsWithTheCurrencyExponent() {
+        assertThat(Money.of("10.5", "USD").minorUnits()).isEqualTo(1050);
+        assertThat(Money.of("10.50", "USD").value()).isEqualTo("10.50");
+        assertThat(Money.of("0.07", "EUR").value()).isEqualTo("0.07");
+        assertThat(Money.of("-3", "USD").value()).isEqualTo("-3.00");
+        assertThat(Money.of("100.00", "USD").minorUnits()).isEqualTo(10000);
+        assertThat(Money.of("1000", "JPY").minorUnits()).isEqualTo(1000);
+        assertThat(Money.of("1000.00", "JPY").value()).isEqualTo("1000");
+        assertThat(Money.of("92233720368547758.07", "USD").minorUnits()).isEqualTo(Long.MAX_VALUE);
+        assertThat(Money.of("0.1", "USD").toBigDecimal()).isEqualByComparingTo("0.10");
+    }
+
+    @Test
+    void rejectsAmountsThatAreNotExact() {
+        assertThatThrownBy(() -> Money.of("10.005", "USD")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.of("10.5", "JPY")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.of("1e3", "USD")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.of(".", "USD")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.of("92233720368547758.08", "USD")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.of("1.00", "usd")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void internsCurrencies() {
+        assertThat(CurrencyUnit.of("USD")).isSameAs(CurrencyUnit.USD);
+        assertThat(CurrencyUnit.of("HUF").exponent()).isZero();
+    }
+
+    @Test
+    void readsAndWritesPayPalAmounts() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        String json = objectMapper.writeValueAsString(Money.ofMinor(1999, "EUR"));
+        assertThat(json).isEqualTo("{\"value\":\"19.99\",\"currency_code\":\"EUR\"}");
+        assertThat(objectMapper.readValue(json, Money.class)).isEqualTo(Money.ofMinor(1999, "EUR"));
+
+        CaptureResource capture = objectMapper.readValue(
+                "{\"id\":\"C1\",\"amount\":{\"currency_code\":\"JPY\",\"value\":\"500\"}}", CaptureResource.class);
+        assertThat(capture.amount()).isEqualTo(Money.ofMinor(500, "JPY"));
+    }
+}
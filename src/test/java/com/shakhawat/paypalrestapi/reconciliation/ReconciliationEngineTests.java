@@ -0,0 +1,123 @@
+package com.shakhawat.paypalrestapi.reconciliation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReconciliationEngineTests {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 1);
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reportsEveryKindOfMismatchWhileSpillingLargeDays() throws IOException {
+        int captures = 500;
+        List<ReconciliationRecord> local = new ArrayList<>();
+        StringBuilder csv = new StringBuilder("transaction_id,transaction_event_code,transaction_initiation_date,"
+                + "transaction_status,transaction_amount,currency_code\n");
+        for (int i = 0; i < captures; i++) {
+            String id = "CAP-" + i;
+            local.add(new ReconciliationRecord(id, ReconciliationRecord.Kind.CAPTURE, DAY, new BigDecimal("10.0"), "USD", "S"));
+            if (i == 1) {
+                continue; // missing in the report
+            }
+            String amount = i == 2 ? "9.99" : "10.00";
+            String status = i == 3 ? "V" : "S";
+            csv.append(id).append(",T0006,2026-10-01T12:00:00+0000,").append(status).append(',')
+                    .append(amount).append(",USD\n");
+        }
+        // Missing locally, a refund with its negative report amount, and a fee that is ignored
+        csv.append("CAP-X,T0006,2026-10-01T23:59:59+0000,S,5.00,USD\n");
+        csv.append("REF-1,T1107,2026-10-01T08:00:00Z,S,-4.00,USD\n");
+        csv.append("FEE-1,T0400,2026-10-01T08:00:00Z,S,-1.00,USD\n");
+        local.add(new ReconciliationRecord("REF-1", ReconciliationRecord.Kind.REFUND, DAY, new BigDecimal("4"), "USD", "S"));
+
+        Path report = directory.resolve("report.csv");
+        Files.writeString(report, csv);
+
+        ReconciliationEngine engine = new ReconciliationEngine(new InMemorySource(Map.of(DAY, local)),
+                objectMapper, 2, 50, directory.resolve("spill").toString());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ReconciliationEngine.Summary summary = engine.reconcile(List.of(report), DAY, DAY.plusDays(1), output);
+
+        assertThat(summary.days()).isEqualTo(2);
+        assertThat(summary.reportRecords()).isEqualTo(captures + 1);
+        assertThat(summary.localRecords()).isEqualTo(captures + 1);
+        assertThat(summary.matched()).isEqualTo(captures - 2);
+        assertThat(summary.mismatches()).containsEntry(ReconciliationMismatch.Type.MISSING_IN_REPORT, 1L)
+                .containsEntry(ReconciliationMismatch.Type.MISSING_LOCALLY, 1L)
+                .containsEntry(ReconciliationMismatch.Type.AMOUNT_DIFFERS, 1L)
+                .containsEntry(ReconciliationMismatch.Type.STATUS_DIFFERS, 1L);
+
+        Map<String, JsonNode> lines = new HashMap<>();
+        for (String line : output.toString().split("\n")) {
+            JsonNode node = objectMapper.readTree(line);
+            lines.put(node.get("id").asText(), node);
+        }
+        assertThat(lines).containsOnlyKeys("CAP-1", "CAP-2", "CAP-3", "CAP-X");
+        assertThat(lines.get("CAP-2").get("reportAmount").decimalValue()).isEqualByComparingTo("9.99");
+        assertThat(lines.get("CAP-3").get("reportStatus").asText()).isEqualTo("V");
+        assertThat(lines.get("CAP-X").get("day").asText()).isEqualTo("2026-10-01");
+        try (Stream<Path> spilled = Files.list(directory.resolve("spill"))) {
+            assertThat(spilled).isEmpty();
+        }
+    }
+
+    @Test
+    void readsTransactionSearchResponses() throws IOException {
+        Path report = directory.resolve("transactions.json");
+        Files.writeString(report, """
+                [{"transaction_details": [
+                  {"transaction_info": {"transaction_id": "CAP-1", "transaction_event_code": "T0006",
+                    "transaction_initiation_date": "2026-09-30T23:30:00-0100", "transaction_status": "S",
+                    "transaction_amount": {"currency_code": "EUR", "value": "12.50"}}}
+                 ], "total_pages": 2},
+                 {"transaction_details": [
+                  {"transaction_info": {"transaction_id": "REF-1", "transaction_event_code": "T1107",
+                    "transaction_initiation_date": "2026-10-01T10:00:00+0000", "transaction_status": "P",
+                    "transaction_amount": {"currency_code": "EUR", "value": "-2.00"}}}
+                 ]}]
+                """);
+
+        List<ReconciliationRecord> records = new ArrayList<>();
+        new TransactionReportReader(objectMapper).read(report, records::add);
+
+        assertThat(records).containsExactly(
+                new ReconciliationRecord("CAP-1", ReconciliationRecord.Kind.CAPTURE, DAY, new BigDecimal("12.50"), "EUR", "S"),
+                new ReconciliationRecord("REF-1", ReconciliationRecord.Kind.REFUND, DAY, new BigDecimal("2.00"), "EUR", "P"));
+    }
+
+    private record InMemorySource(Map<LocalDate, List<ReconciliationRecord>> records) implements LocalRecordSource {
+
+        @Override
+        public <T> T withRecords(LocalDate day, Function<Iterator<ReconciliationRecord>, T> work) {
+            return work.apply(records.getOrDefault(day, List.of()).iterator());
+        }
+    }
+}
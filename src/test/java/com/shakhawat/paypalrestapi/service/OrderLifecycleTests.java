@@ -0,0 +1,85 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.entity.PayPalOrderStatus;
+import com.shakhawat.paypalrestapi.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderLifecycleTests {
+
+    private static OrderEvent event(OrderEvent.Type type, String captureId, String refundId, String value) {
+        return new OrderEvent(type, "O-1", captureId, refundId, value != null ? Money.of(value, "USD") : null, Instant.now());
+    }
+
+    @Test
+    void convergesWhateverTheOrderOfEvents() {
+        List<OrderEvent> events = List.of(
+                event(OrderEvent.Type.CREATED, null, null, null),
+                event(OrderEvent.Type.APPROVED, null, null, null),
+                event(OrderEvent.Type.CAPTURED, "C-1", null, "10.00"),
+                event(OrderEvent.Type.REFUNDED, "C-1", "R-1", "4.00"),
+                event(OrderEvent.Type.REFUNDED, "C-1", "R-2", "6.00"));
+
+        for (List<OrderEvent> order : permutations(events)) {
+            OrderLifecycle lifecycle = OrderLifecycle.EMPTY;
+            for (OrderEvent event : order) {
+                lifecycle = lifecycle.apply(event).apply(event);
+            }
+            assertThat(lifecycle.status()).as("after %s", order).isEqualTo(PayPalOrderStatus.REFUNDED);
+            assertThat(lifecycle.refunded()).isEqualTo(Money.of("10.00", "USD"));
+        }
+    }
+
+    @Test
+    void derivesEachStatus() {
+        OrderLifecycle lifecycle = OrderLifecycle.EMPTY.apply(event(OrderEvent.Type.CREATED, null, null, null));
+        assertThat(lifecycle.status()).isEqualTo(PayPalOrderStatus.CREATED);
+
+        lifecycle = lifecycle.apply(event(OrderEvent.Type.APPROVED, null, null, null));
+        assertThat(lifecycle.status()).isEqualTo(PayPalOrderStatus.APPROVED);
+
+        lifecycle = lifecycle.apply(event(OrderEvent.Type.CAPTURED, "C-1", null, "10.00"));
+        assertThat(lifecycle.status()).isEqualTo(PayPalOrderStatus.CAPTURED);
+
+        lifecycle = lifecycle.apply(event(OrderEvent.Type.REFUNDED, "C-1", "R-1", "2.50"));
+        assertThat(lifecycle.status()).isEqualTo(PayPalOrderStatus.PARTIALLY_REFUNDED);
+
+        // A refund without an amount refunds what is left of the capture
+        lifecycle = lifecycle.apply(event(OrderEvent.Type.REFUNDED, "C-1", "R-2", null));
+        assertThat(lifecycle.status()).isEqualTo(PayPalOrderStatus.REFUNDED);
+    }
+
+    @Test
+    void neverMovesBackBehindAStoredStatus() {
+        OrderLifecycle stored = OrderLifecycle.stored(PayPalOrderStatus.parse("COMPLETED"), null);
+
+        OrderLifecycle lifecycle = stored.apply(event(OrderEvent.Type.APPROVED, null, null, null));
+
+        assertThat(lifecycle.status()).isEqualTo(PayPalOrderStatus.CAPTURED);
+        assertThat(stored.merge(OrderLifecycle.EMPTY.apply(event(OrderEvent.Type.REFUNDED, "C-1", "R-1", "1.00"))).status())
+                .isEqualTo(PayPalOrderStatus.PARTIALLY_REFUNDED);
+    }
+
+    private static <T> List<List<T>> permutations(List<T> items) {
+        if (items.isEmpty()) {
+            return List.of(List.of());
+        }
+        List<List<T>> result = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            List<T> rest = new ArrayList<>(items);
+            T first = rest.remove(i);
+            for (List<T> permutation : permutations(rest)) {
+                List<T> combined = new ArrayList<>();
+                combined.add(first);
+                combined.addAll(permutation);
+                result.add(combined);
+            }
+        }
+        return result;
+    }
+}
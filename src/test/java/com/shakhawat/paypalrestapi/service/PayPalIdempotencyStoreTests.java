@@ -0,0 +1,96 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.entity.PayPalIdempotencyRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PayPalIdempotencyStoreTests {
+
+    private static final TypeReference<Map<String, String>> RESPONSE = new TypeReference<>() {};
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private PayPalDataService dataService;
+    private PayPalIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        dataService = mock(PayPalDataService.class);
+        when(dataService.findIdempotencyRecord(anyString())).thenReturn(Mono.empty());
+        when(dataService.saveIdempotencyRecord(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(Mono.empty());
+        store = new PayPalIdempotencyStore(dataService, new ObjectMapper(), Duration.ofHours(1), 100, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void replaysStoredResponseWithoutRunningAgain() {
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(store.execute("capture-O1", "capture-order", "h1", RESPONSE, this::action))
+                    .expectNext(Map.of("call", "1"))
+                    .verifyComplete();
+        }
+        assertEquals(1, calls.get());
+        verify(dataService).saveIdempotencyRecord(eq("capture-O1"), eq("capture-order"), eq("h1"), eq("{\"call\":\"1\"}"), any());
+    }
+
+    @Test
+    void concurrentRequestsShareOneExecution() {
+        Mono<Map<String, String>> slow = Mono.delay(Duration.ofMillis(100)).then(action());
+        AtomicInteger started = new AtomicInteger();
+
+        StepVerifier.create(Mono.zip(
+                        store.execute("refund-C1", "refund", "h1", RESPONSE, () -> { started.incrementAndGet(); return slow; }),
+                        store.execute("refund-C1", "refund", "h1", RESPONSE, () -> { started.incrementAndGet(); return slow; })))
+                .assertNext(both -> assertEquals(both.getT1(), both.getT2()))
+                .verifyComplete();
+        assertEquals(1, started.get());
+    }
+
+    @Test
+    void replaysResponseStoredByAnotherNode() {
+        PayPalIdempotencyRecord record = PayPalIdempotencyRecord.builder()
+                .idempotencyKey("capture-O2").requestHash("h1").responseBody("{\"call\":\"remote\"}").build();
+        when(dataService.findIdempotencyRecord("capture-O2")).thenReturn(Mono.just(record));
+
+        StepVerifier.create(store.execute("capture-O2", "capture-order", "h1", RESPONSE, this::action))
+                .expectNext(Map.of("call", "remote"))
+                .verifyComplete();
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void refusesKeyReusedForDifferentRequest() {
+        store.execute("create-order-K", "create-order", "h1", RESPONSE, this::action).block();
+
+        StepVerifier.create(store.execute("create-order-K", "create-order", "h2", RESPONSE, this::action))
+                .expectError(PayPalIdempotencyStore.KeyReusedException.class)
+                .verify();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void doesNotStoreFailures() {
+        StepVerifier.create(store.execute("refund-C2", "refund", "h1", RESPONSE, () -> Mono.<Map<String, String>>error(new IllegalStateException("boom"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        StepVerifier.create(store.execute("refund-C2", "refund", "h1", RESPONSE, this::action))
+                .expectNext(Map.of("call", "1"))
+                .verifyComplete();
+    }
+
+    private Mono<Map<String, String>> action() {
+        return Mono.fromSupplier(() -> Map.of("call", String.valueOf(calls.incrementAndGet())));
+    }
+}
@@ -0,0 +1,93 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shakhawat.paypalrestapi.model.CaptureResource;
+import com.shakhawat.paypalrestapi.model.OrderResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PayPalOrderBatchesTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PayPalCaptureCoordinator captureCoordinator;
+    private PayPalDataService dataService;
+    private PayPalOrderBatches batches;
+
+    @BeforeEach
+    void setUp() {
+        captureCoordinator = mock(PayPalCaptureCoordinator.class);
+        dataService = mock(PayPalDataService.class);
+        PayPalOrderProjection orderProjection = mock(PayPalOrderProjection.class);
+        when(orderProjection.apply(any())).thenReturn(Mono.empty());
+        batches = new PayPalOrderBatches(mock(PayPalService.class), captureCoordinator, dataService, orderProjection, 10, 3);
+    }
+
+    @Test
+    void capturesWithBoundedConcurrencyAndReportsFailuresPerItem() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger stored = new AtomicInteger();
+        when(captureCoordinator.capture(anyString())).thenAnswer(invocation -> {
+            String orderId = invocation.getArgument(0);
+            return Mono.defer(() -> {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        return Mono.delay(Duration.ofMillis(20));
+                    })
+                    .then(orderId.equals("O-4")
+                            ? Mono.<OrderResponse>error(new IllegalStateException("Order O-4 cannot be captured"))
+                            : Mono.fromCallable(() -> response(orderId)))
+                    .doOnTerminate(inFlight::decrementAndGet);
+        });
+        when(dataService.saveCapturedOrder(anyString(), any())).thenAnswer(invocation -> {
+            // Every PayPal call has returned before anything is stored
+            assertEquals(0, inFlight.get());
+            stored.incrementAndGet();
+            return Mono.just(invocation.<OrderResponse>getArgument(1).firstCapture());
+        });
+
+        List<String> orderIds = IntStream.range(0, 8).mapToObj(i -> "O-" + i).toList();
+        StepVerifier.create(batches.captureOrders(orderIds))
+                .assertNext(items -> {
+                    assertEquals(8, items.size());
+                    for (int i = 0; i < 8; i++) {
+                        PayPalOrderBatches.Item<CaptureResource> item = items.get(i);
+                        assertEquals(i, item.index());
+                        assertEquals(i != 4, item.succeeded());
+                        if (item.succeeded()) {
+                            assertEquals("C-" + i, item.value().id());
+                        }
+                    }
+                })
+                .verifyComplete();
+        assertTrue(maxInFlight.get() <= 3, "at most 3 captures in flight, saw " + maxInFlight.get());
+        assertEquals(7, stored.get());
+    }
+
+    @Test
+    void rejectsBatchesOverTheLimit() {
+        List<String> orderIds = IntStream.range(0, 11).mapToObj(i -> "O-" + i).toList();
+        StepVerifier.create(batches.captureOrders(orderIds))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verifyNoInteractions(captureCoordinator);
+    }
+
+    private OrderResponse response(String orderId) throws Exception {
+        return objectMapper.readValue("""
+                {"id": "%s", "status": "COMPLETED", "purchase_units": [{"payments": {"captures": [
+                    {"id": "C-%s", "status": "COMPLETED", "amount": {"currency_code": "USD", "value": "5.00"}}]}}]}
+                """.formatted(orderId, orderId.substring(2)), OrderResponse.class);
+    }
+}
@@ -0,0 +1,125 @@
+package com.shakhawat.paypalrestapi.service;
+
+import com.shakhawat.paypalrestapi.service.PayPalResilience.Operation;
+import com.shakhawat.paypalrestapi.service.PayPalResilience.Policy;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PayPalResilienceTests {
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile IntFunction<HttpResponseStatus> responses = hit -> HttpResponseStatus.OK;
+    private volatile Duration delay = Duration.ZERO;
+
+    private DisposableServer server;
+    private WebClient webClient;
+
+    @BeforeEach
+    void startStub() {
+        server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> {
+                    int hit = hits.incrementAndGet();
+                    return Mono.delay(delay).then(response.status(responses.apply(hit)).sendString(Mono.just("ok")).then());
+                })
+                .bindNow();
+        webClient = WebClient.create("http://localhost:" + server.port());
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.disposeNow();
+    }
+
+    @Test
+    void retriesTransientFailuresOfIdempotentCalls() {
+        responses = hit -> hit <= 2 ? HttpResponseStatus.SERVICE_UNAVAILABLE : HttpResponseStatus.OK;
+
+        StepVerifier.create(resilience(policy(true, 10, 100)).decorate(Operation.TOKEN, call()))
+                .expectNext("ok")
+                .verifyComplete();
+        assertEquals(3, hits.get());
+    }
+
+    @Test
+    void attemptsOnceWhenRetryIsDisabled() {
+        responses = hit -> HttpResponseStatus.SERVICE_UNAVAILABLE;
+
+        StepVerifier.create(resilience(policy(false, 10, 100)).decorate(Operation.CREATE_ORDER, call()))
+                .expectError(WebClientResponseException.ServiceUnavailable.class)
+                .verify();
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        responses = hit -> HttpResponseStatus.BAD_REQUEST;
+
+        StepVerifier.create(resilience(policy(true, 10, 100)).decorate(Operation.TOKEN, call()))
+                .expectError(WebClientResponseException.BadRequest.class)
+                .verify();
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void opensCircuitAndFailsFast() {
+        responses = hit -> HttpResponseStatus.INTERNAL_SERVER_ERROR;
+        PayPalResilience resilience = resilience(policy(false, 4, 100));
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(resilience.decorate(Operation.VERIFY, call()))
+                    .expectError(WebClientResponseException.InternalServerError.class)
+                    .verify();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, resilience.state(Operation.VERIFY));
+
+        StepVerifier.create(resilience.decorate(Operation.VERIFY, call()))
+                .expectError(CallNotPermittedException.class)
+                .verify();
+        assertEquals(4, hits.get());
+    }
+
+    @Test
+    void shedsCallsBeyondTheBulkhead() {
+        delay = Duration.ofMillis(300);
+        PayPalResilience resilience = resilience(policy(false, 10, 1));
+
+        StepVerifier.create(Mono.zipDelayError(
+                        resilience.decorate(Operation.CAPTURE_ORDER, call()),
+                        resilience.decorate(Operation.CAPTURE_ORDER, call())))
+                .expectError(BulkheadFullException.class)
+                .verify();
+        assertEquals(1, hits.get());
+    }
+
+    private Mono<String> call() {
+        return webClient.get().uri("/").retrieve().bodyToMono(String.class);
+    }
+
+    private static PayPalResilience resilience(Policy policy) {
+        return new PayPalResilience(operation -> policy, new SimpleMeterRegistry());
+    }
+
+    private static Policy policy(boolean retry, int window, int maxConcurrentCalls) {
+        return new Policy(retry, 3, Duration.ofMillis(10), Duration.ofMillis(50), 0.5,
+                50f, window, window, Duration.ofMinutes(1), maxConcurrentCalls);
+    }
+}
@@ -0,0 +1,84 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayPalTokenCacheTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private PayPalTokenCache cacheIssuing(Duration lifetime, Duration delay) {
+        return new PayPalTokenCache(
+                () -> Mono.fromSupplier(() -> new PayPalTokenCache.AccessToken(
+                                "token-" + requests.incrementAndGet(), Instant.now().plus(lifetime)))
+                        .delayElement(delay),
+                Duration.ofMinutes(5),
+                meterRegistry);
+    }
+
+    @Test
+    void reusesTokenUntilItExpires() {
+        PayPalTokenCache cache = cacheIssuing(Duration.ofHours(9), Duration.ZERO);
+
+        StepVerifier.create(cache.getToken()).expectNext("token-1").verifyComplete();
+        StepVerifier.create(cache.getToken()).expectNext("token-1").verifyComplete();
+
+        assertThat(requests).hasValue(1);
+        assertThat(meterRegistry.get("paypal.token.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("paypal.token.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+        cache.shutdown();
+    }
+
+    @Test
+    void concurrentCallersShareOneTokenRequest() {
+        PayPalTokenCache cache = cacheIssuing(Duration.ofHours(9), Duration.ofMillis(100));
+
+        StepVerifier.create(Mono.zip(cache.getToken(), cache.getToken(), cache.getToken()))
+                .assertNext(tokens -> {
+                    assertThat(tokens.getT1()).isEqualTo("token-1");
+                    assertThat(tokens.getT2()).isEqualTo("token-1");
+                    assertThat(tokens.getT3()).isEqualTo("token-1");
+                })
+                .verifyComplete();
+
+        assertThat(requests).hasValue(1);
+        cache.shutdown();
+    }
+
+    @Test
+    void invalidateOnlyDropsTheRejectedToken() {
+        PayPalTokenCache cache = cacheIssuing(Duration.ofHours(9), Duration.ZERO);
+        cache.getToken().block();
+
+        cache.invalidate("some-older-token");
+        StepVerifier.create(cache.getToken()).expectNext("token-1").verifyComplete();
+
+        cache.invalidate("token-1");
+        StepVerifier.create(cache.getToken()).expectNext("token-2").verifyComplete();
+        cache.shutdown();
+    }
+
+    @Test
+    void failedRequestIsNotCached() {
+        AtomicInteger attempts = new AtomicInteger();
+        PayPalTokenCache cache = new PayPalTokenCache(
+                () -> attempts.incrementAndGet() == 1
+                        ? Mono.error(new IllegalStateException("boom"))
+                        : Mono.just(new PayPalTokenCache.AccessToken("token", Instant.now().plus(Duration.ofHours(1)))),
+                Duration.ofMinutes(5),
+                meterRegistry);
+
+        StepVerifier.create(cache.getToken()).expectError(IllegalStateException.class).verify();
+        StepVerifier.create(cache.getToken()).expectNext("token").verifyComplete();
+        cache.shutdown();
+    }
+}
@@ -0,0 +1,37 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayPalWebhookDeduplicatorTests {
+
+    @Test
+    void remembersAcceptedEventsUpToMaxEntries() {
+        PayPalWebhookDeduplicator deduplicator = new PayPalWebhookDeduplicator(2, Duration.ofHours(1), new SimpleMeterRegistry());
+
+        deduplicator.markSeen("WH-1");
+        deduplicator.markSeen("WH-2");
+        assertThat(deduplicator.isDuplicate("WH-1")).isTrue();
+
+        deduplicator.markSeen("WH-3");
+        assertThat(deduplicator.isDuplicate("WH-1")).isFalse();
+        assertThat(deduplicator.isDuplicate("WH-2")).isTrue();
+        assertThat(deduplicator.isDuplicate("WH-3")).isTrue();
+        assertThat(deduplicator.isDuplicate(null)).isFalse();
+    }
+
+    @Test
+    void forgetsEventsAfterTtl() throws InterruptedException {
+        PayPalWebhookDeduplicator deduplicator = new PayPalWebhookDeduplicator(10, Duration.ofMillis(20), new SimpleMeterRegistry());
+
+        deduplicator.markSeen("WH-1");
+        Thread.sleep(50);
+
+        assertThat(deduplicator.isDuplicate("WH-1")).isFalse();
+        assertThat(deduplicator.size()).isZero();
+    }
+}
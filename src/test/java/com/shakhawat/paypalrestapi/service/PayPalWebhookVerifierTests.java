@@ -0,0 +1,118 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PayPalWebhookVerifierTests {
+
+    private static final String CERT_URL = "https://api.sandbox.paypal.com/v1/notifications/certs/CERT-1";
+    private static final String BODY = "{\"id\":\"WH-1\",\"event_type\":\"PAYMENT.CAPTURE.COMPLETED\"}";
+
+    private KeyPair keyPair;
+    private PayPalService payPalService;
+    private PayPalCertificateCache certificateCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        X509Certificate certificate = mock(X509Certificate.class);
+        when(certificate.getPublicKey()).thenReturn(keyPair.getPublic());
+
+        payPalService = mock(PayPalService.class);
+        when(payPalService.getWebhookId()).thenReturn("WEBHOOK-ID");
+
+        certificateCache = mock(PayPalCertificateCache.class);
+        when(certificateCache.getCertificate(CERT_URL)).thenReturn(Mono.just(certificate));
+    }
+
+    @Test
+    void acceptsSignatureOverTransmissionAndBodyChecksum() throws Exception {
+        HttpHeaders headers = headers(sign("T-1|2026-10-18T10:00:00Z|WEBHOOK-ID|" + crc32(BODY)));
+
+        StepVerifier.create(verifier(PayPalWebhookVerifier.Mode.LOCAL).verify(headers, BODY.getBytes(StandardCharsets.UTF_8)))
+                .expectNext(true)
+                .verifyComplete();
+        verify(payPalService, never()).withAccessToken(any());
+    }
+
+    @Test
+    void rejectsTamperedBody() throws Exception {
+        HttpHeaders headers = headers(sign("T-1|2026-10-18T10:00:00Z|WEBHOOK-ID|" + crc32(BODY)));
+
+        StepVerifier.create(verifier(PayPalWebhookVerifier.Mode.LOCAL).verify(headers, BODY.replace("WH-1", "WH-2").getBytes(StandardCharsets.UTF_8)))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void fallsBackToPayPalWhenCertificateIsUnavailable() throws Exception {
+        when(certificateCache.getCertificate(anyString())).thenReturn(Mono.error(new IllegalStateException("download failed")));
+        when(payPalService.withAccessToken(any())).thenReturn(Mono.just(true));
+        HttpHeaders headers = headers(sign("anything"));
+
+        StepVerifier.create(verifier(PayPalWebhookVerifier.Mode.LOCAL_WITH_FALLBACK).verify(headers, BODY.getBytes(StandardCharsets.UTF_8)))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void refusesCertificatesOutsideAllowedHosts() {
+        PayPalCertificateCache cache = new PayPalCertificateCache(ConnectionProvider.create("test", 1), List.of("api.paypal.com"),
+                Duration.ofHours(1), Duration.ofSeconds(1), Duration.ofSeconds(1));
+
+        StepVerifier.create(cache.getCertificate("https://evil.example.com/cert.pem"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(cache.getCertificate("http://api.paypal.com/cert.pem"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    private PayPalWebhookVerifier verifier(PayPalWebhookVerifier.Mode mode) {
+        return new PayPalWebhookVerifier(payPalService, certificateCache, mode, new SimpleMeterRegistry());
+    }
+
+    private HttpHeaders headers(String signature) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("paypal-transmission-id", "T-1");
+        headers.add("paypal-transmission-time", "2026-10-18T10:00:00Z");
+        headers.add("paypal-transmission-sig", signature);
+        headers.add("paypal-cert-url", CERT_URL);
+        headers.add("paypal-auth-algo", "SHA256withRSA");
+        return headers;
+    }
+
+    private String sign(String message) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(message.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(signature.sign());
+    }
+
+    private static long crc32(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
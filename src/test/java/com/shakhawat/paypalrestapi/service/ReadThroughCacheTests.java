@@ -0,0 +1,87 @@
+package com.shakhawat.paypalrestapi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadThroughCacheTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DatabaseScheduler databaseScheduler = new DatabaseScheduler(4, 100, false, meterRegistry);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        databaseScheduler.shutdown();
+    }
+
+    private ReadThroughCache<Optional<String>> cache(Duration negativeTtl) {
+        return new ReadThroughCache<>("test", 100, Duration.ofMinutes(10), negativeTtl, Optional::isEmpty, databaseScheduler, meterRegistry);
+    }
+
+    @Test
+    void loadsOnceUntilInvalidated() {
+        ReadThroughCache<Optional<String>> cache = cache(Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get("C-1", () -> Optional.of("O-" + loads.incrementAndGet())).block()).contains("O-1");
+        assertThat(cache.get("C-1", () -> Optional.of("O-" + loads.incrementAndGet())).block()).contains("O-1");
+
+        cache.invalidate("C-1");
+        assertThat(cache.get("C-1", () -> Optional.of("O-" + loads.incrementAndGet())).block()).contains("O-2");
+
+        cache.put("C-1", Optional.of("O-9"));
+        assertThat(cache.get("C-1", () -> Optional.of("O-" + loads.incrementAndGet())).block()).contains("O-9");
+        assertThat(loads).hasValue(2);
+        assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", "test").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void remembersMissesForTheNegativeTtl() throws InterruptedException {
+        ReadThroughCache<Optional<String>> cache = cache(Duration.ofMillis(50));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("C-1", () -> { loads.incrementAndGet(); return Optional.<String>empty(); }).block();
+        cache.get("C-1", () -> { loads.incrementAndGet(); return Optional.<String>empty(); }).block();
+        assertThat(loads).hasValue(1);
+
+        Thread.sleep(100);
+        cache.get("C-1", () -> { loads.incrementAndGet(); return Optional.<String>empty(); }).block();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() {
+        ReadThroughCache<Optional<String>> cache = cache(Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Flux.range(0, 8)
+                .flatMap(i -> cache.get("C-1", () -> {
+                    loads.incrementAndGet();
+                    release.await();
+                    return Optional.of("O-1");
+                }))
+                .doOnSubscribe(s -> new Thread(() -> sleepThen(release)).start())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(loads).hasValue(1);
+    }
+
+    private static void sleepThen(CountDownLatch latch) {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        latch.countDown();
+    }
+}